@@ -11,6 +11,7 @@ plugins {
   alias(libs.plugins.pluginPublish)
   alias(libs.plugins.spotless)
   alias(libs.plugins.ideaExt)
+  alias(libs.plugins.jmh)
   eclipse
 }
 
@@ -71,6 +72,75 @@ dependencies {
   checkstyle(libs.stylecheck)
 }
 
+// Worker micro-benchmarks, run with `./gradlew jmh`
+// these live in the worker package, and see the worker classpath just like the worker does at runtime
+dependencies {
+  "jmhImplementation"(workerClasspath.map { it.output })
+  "jmhImplementation"(workerShared.map { it.output })
+  "jmhImplementation"(libs.pebble)
+  "jmhImplementation"(libs.snakeyamlEngine)
+  "jmhImplementation"(gradleApi())
+}
+
+jmh {
+  jmhVersion = libs.versions.jmh
+  profilers.add("gc")
+  resultFormat = "JSON"
+  // narrow down with -Pblossom.jmh.includes=LoaderBenchmark
+  providers.gradleProperty("blossom.jmh.includes").orNull?.let { includes.add(it) }
+}
+
+// Build performance scenarios, run on demand with `./gradlew perfTest`
+val perfTest by sourceSets.registering
+configurations.named(perfTest.get().implementationConfigurationName) {
+  extendsFrom(configurations.testImplementation.get())
+}
+configurations.named(perfTest.get().runtimeOnlyConfigurationName) {
+  extendsFrom(configurations.testRuntimeOnly.get())
+}
+// worker dependencies are passed to synthetic builds as files, so they can run offline
+val perfTestWorkerRuntime by configurations.registering {
+  isCanBeConsumed = false
+}
+dependencies {
+  "perfTestImplementation"(gradleTestKit())
+  perfTestWorkerRuntime.name(libs.pebble)
+  perfTestWorkerRuntime.name(libs.snakeyamlEngine)
+}
+
+gradlePlugin {
+  testSourceSets(sourceSets.test.get(), perfTest.get())
+}
+
+tasks.register("perfTest", Test::class) {
+  description = "Measures the build-time cost of the plugin on synthetic projects."
+  group = LifecycleBasePlugin.VERIFICATION_GROUP
+  testClassesDirs = perfTest.get().output.classesDirs
+  classpath = perfTest.get().runtimeClasspath
+  useJUnitPlatform()
+  shouldRunAfter(tasks.test)
+  // results are only meaningful when actually measured
+  outputs.upToDateWhen { false }
+  testLogging.showStandardStreams = true
+  // forward tuning knobs like -Pblossom.perf.projects=600
+  providers.gradlePropertiesPrefixedBy("blossom.perf.").get().forEach { (key, value) -> systemProperty(key, value) }
+
+  val workerRuntime = perfTestWorkerRuntime.get()
+  val resultsDirectory = layout.buildDirectory.dir("reports/blossom-perf")
+  val pluginVersion = project.version.toString()
+  val gradleVersion = gradle.gradleVersion
+  inputs.files(workerRuntime)
+  outputs.dir(resultsDirectory)
+  jvmArgumentProviders.add(CommandLineArgumentProvider {
+    listOf(
+      "-Dblossom.perf.workerClasspath=${workerRuntime.asPath}",
+      "-Dblossom.perf.resultsDirectory=${resultsDirectory.get().asFile.absolutePath}",
+      "-Dblossom.perf.pluginVersion=$pluginVersion",
+      "-Dblossom.perf.gradleVersion=$gradleVersion"
+    )
+  })
+}
+
 // generated sources (blossom jr)
 val templatesRoot = layout.projectDirectory.dir("src/main/java-templates")
 val templateDest = layout.buildDirectory.dir("generated/sources/java-templates/")
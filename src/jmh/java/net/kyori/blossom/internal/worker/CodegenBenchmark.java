@@ -0,0 +1,106 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Converting identifiers to another case while rendering, with the filters from {@link CodegenExtension} compared to
+ * the macros templates would otherwise have to use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CodegenBenchmark {
+  private static final String FILTERS = "{% for key in keys %}"
+    + "static final Key {{ key | constantCase }} = key(\"{{ key | pascalCase }}\");\n"
+    + "{% endfor %}";
+  private static final String MACROS = "{% macro constant(s) %}{{ s | replace({'-': '_'}) | upper }}{% endmacro %}"
+    + "{% macro pascal(s) %}{% for word in s | split('-') %}{{ word | capitalize }}{% endfor %}{% endmacro %}"
+    + "{% for key in keys %}"
+    + "static final Key {{ constant(key) }} = key(\"{{ pascal(key) }}\");\n"
+    + "{% endfor %}";
+
+  @Param({"100", "10000"})
+  public int keyCount;
+
+  private Map<String, Object> context;
+  private PebbleTemplate filters;
+  private PebbleTemplate macros;
+
+  @Setup
+  public void setUp() {
+    final List<String> keys = new ArrayList<>(this.keyCount);
+    for (int i = 0; i < this.keyCount; i++) {
+      keys.add("registry-entry-" + i + "-value");
+    }
+    this.context = Map.of("keys", keys);
+
+    final PebbleEngine engine = new PebbleEngine.Builder()
+      .autoEscaping(false)
+      .defaultLocale(Locale.ROOT)
+      .loader(new StringLoader())
+      .strictVariables(true)
+      .extension(new CodegenExtension())
+      .build();
+    this.filters = engine.getTemplate(FILTERS);
+    this.macros = engine.getTemplate(MACROS);
+  }
+
+  @Benchmark
+  public String nativeFilters() throws IOException {
+    return this.render(this.filters);
+  }
+
+  @Benchmark
+  public String macros() throws IOException {
+    return this.render(this.macros);
+  }
+
+  private String render(final PebbleTemplate template) throws IOException {
+    final StringWriter writer = new StringWriter(this.keyCount * 96);
+    template.evaluate(writer, this.context);
+    return writer.toString();
+  }
+}
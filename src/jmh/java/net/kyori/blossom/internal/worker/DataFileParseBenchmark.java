@@ -0,0 +1,99 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a registry-like data file, the same data written in each supported format.
+ *
+ * <p>JSON data is only indexed when parsed, so reading a single entry shows the cost for templates that only use part of
+ * a data file.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DataFileParseBenchmark {
+  @Param({"yaml", "json", "jsonl"})
+  public String format;
+
+  @Param({"1000", "100000"})
+  public int entryCount;
+
+  private Path file;
+  private byte[] contents;
+
+  @Setup
+  public void setUp() {
+    final StringBuilder data = new StringBuilder(this.entryCount * 64);
+    for (int i = 0; i < this.entryCount; i++) {
+      final String id = "entry_" + i;
+      switch (this.format) {
+        case "yaml":
+          data.append(id).append(":\n  id: ").append(i).append("\n  name: \"Entry ").append(i).append("\"\n  tags: [a, b]\n");
+          break;
+        case "json":
+          data.append(i == 0 ? "{" : ",").append("\n  \"").append(id).append("\": {\"id\": ").append(i)
+            .append(", \"name\": \"Entry ").append(i).append("\", \"tags\": [\"a\", \"b\"]}");
+          break;
+        case "jsonl":
+          data.append("{\"").append(id).append("\": {\"id\": ").append(i)
+            .append(", \"name\": \"Entry ").append(i).append("\", \"tags\": [\"a\", \"b\"]}}\n");
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown format " + this.format);
+      }
+    }
+    if (this.format.equals("json")) {
+      data.append("\n}\n");
+    }
+    this.file = Path.of("registry." + this.format);
+    this.contents = data.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public Object parse() throws IOException {
+    return DataFileCache.parse(this.file, this.contents);
+  }
+
+  @Benchmark
+  public Object parseAndReadOneEntry() throws IOException {
+    return ((Map<?, ?>) DataFileCache.parse(this.file, this.contents)).get("entry_" + (this.entryCount / 2));
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Computing the data for every variant, and reading every value of every variant once.
+ *
+ * <p>Data files are only parsed on the first invocation and then served from the worker's data file cache, as they would be in a warm daemon.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DataPreparationBenchmark {
+  @Param({"1", "8", "64"})
+  public int variantCount;
+
+  @Param({"10", "1000", "20000"})
+  public int dataSize;
+
+  private Workload workload;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.workload = Workload.create(1, 0, this.variantCount, this.dataSize, 1);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    this.workload.delete();
+  }
+
+  @Benchmark
+  public void prepareData(final Blackhole bh) {
+    for (final Map<String, Object> variant : PropertyFileIO.prepareDataForGeneration(this.workload.globalParams, this.workload.variantParams, Workload.NO_MATRIX)) {
+      for (final Map.Entry<String, Object> entry : variant.entrySet()) {
+        bh.consume(entry.getValue());
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A full, non-incremental generation run, as performed by the worker in a warm daemon.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GenerateBenchmark {
+  @Param({"10", "200"})
+  public int templateCount;
+
+  @Param({"0", "4"})
+  public int includeDepth;
+
+  @Param({"1", "8"})
+  public int variantCount;
+
+  @Param({"10", "1000"})
+  public int dataSize;
+
+  @Param({"1", "200"})
+  public int outputLines;
+
+  private Workload workload;
+  private Path outputDirectory;
+  private Path manifest;
+  private final GenerateWorkerInvokerImpl invoker = new GenerateWorkerInvokerImpl();
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.workload = Workload.create(this.templateCount, this.includeDepth, this.variantCount, this.dataSize, this.outputLines);
+    this.outputDirectory = this.workload.root.resolve("output");
+    this.manifest = this.workload.root.resolve("manifest.txt");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    this.workload.delete();
+  }
+
+  @Benchmark
+  public void generate() throws IOException {
+    this.invoker.generate(
+      this.workload.globalParams,
+      this.workload.variantParams,
+      Workload.NO_MATRIX,
+      Set.of(this.workload.includes),
+      Set.of(this.workload.sources),
+      this.outputDirectory,
+      null,
+      false,
+      this.manifest,
+      this.manifest,
+      new GenerationOptions()
+    );
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Template lookups through the {@link MultiDirectoryLoader}, both from a freshly invalidated loader (the first lookups of
+ * a generation run) and from a loader that has already indexed and read everything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoaderBenchmark {
+  @Param({"10", "200", "2000"})
+  public int templateCount;
+
+  @Param({"0", "4"})
+  public int includeDepth;
+
+  private Workload workload;
+  private MultiDirectoryLoader loader;
+  private Set<String> names;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.workload = Workload.create(this.templateCount, this.includeDepth, 1, 1, 1);
+    this.loader = new MultiDirectoryLoader(List.of(this.workload.sources, this.workload.includes), MultiDirectoryLoader.CHARSET);
+    this.names = this.loader.templateNames(List.of(this.workload.sources, this.workload.includes));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    this.workload.delete();
+  }
+
+  @Benchmark
+  public void coldLookup(final Blackhole bh) throws IOException {
+    this.loader.invalidate();
+    this.lookupAll(bh);
+  }
+
+  @Benchmark
+  public void warmLookup(final Blackhole bh) throws IOException {
+    this.lookupAll(bh);
+  }
+
+  private void lookupAll(final Blackhole bh) throws IOException {
+    for (final String name : this.names) {
+      final MultiDirectoryLoader.TemplateKey key = this.loader.createCacheKey(name);
+      try (final Reader reader = this.loader.getReader(key)) {
+        bh.consume(reader.read());
+      }
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A synthetic template set on disk, shaped by the parameters of a benchmark.
+ */
+final class Workload {
+  static final String SET_NAME = "benchmark";
+  static final VariantMatrixSpec NO_MATRIX = new VariantMatrixSpec(Map.of(), List.of());
+
+  final Path root;
+  final Path sources;
+  final Path includes;
+  final Path dataFile;
+  final TemplateParams globalParams;
+  final Set<TemplateParams> variantParams;
+
+  /**
+   * Write a workload to a new temporary directory.
+   *
+   * @param templateCount the number of templates to process
+   * @param includeDepth the length of the chain of includes each template pulls in
+   * @param variantCount the number of variants, where {@code 1} means variants are not used at all
+   * @param dataSize the number of entries in the global data file
+   * @param outputLines the number of lines each template renders
+   * @return the workload
+   * @throws IOException if unable to write files
+   */
+  static Workload create(final int templateCount, final int includeDepth, final int variantCount, final int dataSize, final int outputLines) throws IOException {
+    final Path root = Files.createTempDirectory("blossom-jmh");
+    final Path sources = Files.createDirectories(root.resolve("templates"));
+    final Path includes = Files.createDirectories(root.resolve("includes"));
+
+    // a chain of includes, each one pulling in the next
+    for (int i = 0; i < includeDepth; i++) {
+      final String next = i + 1 < includeDepth ? "{% include \"include" + (i + 1) + ".peb\" %}" : "";
+      Files.writeString(includes.resolve("include" + i + ".peb"), "include " + i + ": {{ key0 }}\n" + next);
+    }
+
+    final String body = (includeDepth > 0 ? "{% include \"include0.peb\" %}\n" : "")
+      + "{% for i in range(1, " + outputLines + ") %}line {{ i }} of {{ variant | default('none') }}: {{ key" + (dataSize - 1) + " }}\n{% endfor %}";
+    for (int i = 0; i < templateCount; i++) {
+      final String name = variantCount > 1 ? "template" + i + "-{{ variant }}.txt.peb" : "template" + i + ".txt.peb";
+      Files.writeString(sources.resolve(name), body);
+    }
+
+    final StringBuilder data = new StringBuilder();
+    for (int i = 0; i < dataSize; i++) {
+      data.append("key").append(i).append(": \"value ").append(i).append("\"\n");
+    }
+    final Path dataFile = root.resolve("data.yaml");
+    Files.writeString(dataFile, data);
+
+    final Set<TemplateParams> variants = new LinkedHashSet<>();
+    if (variantCount > 1) {
+      for (int i = 0; i < variantCount; i++) {
+        variants.add(new TemplateParams("variant" + i, Set.of(), Map.of("index", i)));
+      }
+    }
+
+    return new Workload(root, sources, includes, dataFile, new TemplateParams(SET_NAME, Set.of(dataFile), Map.of("version", "1.0.0")), variants);
+  }
+
+  private Workload(final Path root, final Path sources, final Path includes, final Path dataFile, final TemplateParams globalParams, final Set<TemplateParams> variantParams) {
+    this.root = root;
+    this.sources = sources;
+    this.includes = includes;
+    this.dataFile = dataFile;
+    this.globalParams = globalParams;
+    this.variantParams = variantParams;
+  }
+
+  /**
+   * Delete every file of this workload.
+   *
+   * @throws IOException if unable to delete
+   */
+  void delete() throws IOException {
+    Files.walkFileTree(this.root, new SimpleFileVisitor<>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
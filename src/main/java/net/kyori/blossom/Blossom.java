@@ -21,6 +21,8 @@
 package net.kyori.blossom;
 
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
 import net.kyori.blossom.internal.BlossomExtensionImpl;
 import net.kyori.blossom.internal.BuildParameters;
 import net.kyori.blossom.internal.IdeConfigurer;
@@ -32,6 +34,7 @@ import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.ConfigurationContainer;
 import org.gradle.api.artifacts.dsl.DependencyHandler;
 import org.gradle.api.file.Directory;
+import org.gradle.api.file.RegularFile;
 import org.gradle.api.plugins.ExtensionAware;
 import org.gradle.api.plugins.ExtensionContainer;
 import org.gradle.api.plugins.JavaBasePlugin;
@@ -60,6 +63,8 @@ public class Blossom implements ProjectPlugin {
   private static final String GENERATION_GROUP = "blossom";
   private static final String EXTENSION_NAME = "blossom";
   private static final String BLOSSOM_RUNTIME_CONFIG = "blossomRuntime";
+  private static final String BLOSSOM_EXTENSIONS_CONFIG = "blossomExtensions";
+  private static final String BATCH_GENERATION_PROPERTY = "blossom.batchGeneration";
   private static final String PEBBLE_ARTIFACT_ID = "io.pebbletemplates:pebble";
   private static final String SNAKEYAML_ARTIFACT_ID = "org.snakeyaml:snakeyaml-engine";
 
@@ -76,37 +81,102 @@ public class Blossom implements ProjectPlugin {
 
       final SourceSetContainer sourceSets = extensions.getByType(SourceSetContainer.class);
       final NamedDomainObjectProvider<Configuration> blossomRuntimeConfig = this.registerBlossomRuntimeConfig(project.getDependencies(), project.getConfigurations());
-      sourceSets.all(set -> {
-        final BlossomExtension extension = set.getExtensions().create(BlossomExtension.class, EXTENSION_NAME, BlossomExtensionImpl.class, project.getObjects());
-        final Directory baseInputDir = project.getLayout().getProjectDirectory().dir("src/" + set.getName());
-        final Provider<Directory> generatedBase = project.getLayout().getBuildDirectory().dir("generated");
+      final @Nullable TaskProvider<GenerateTemplateBatch> batchTask = this.registerBatchTask(project, tasks, blossomRuntimeConfig);
+      sourceSets.configureEach(set -> {
+        final BlossomExtensionImpl extension = (BlossomExtensionImpl) set.getExtensions().create(BlossomExtension.class, EXTENSION_NAME, BlossomExtensionImpl.class, project.getObjects());
 
-        // generate a task for each template set
-        extension.getTemplateSets().all(templateSet -> {
+        // only wire anything up once a build script actually touches the template sets of this source set
+        extension.whenTemplateSetsCreated(templateSets -> templateSets.all(templateSet -> {
+          final Directory baseInputDir = project.getLayout().getProjectDirectory().dir("src/" + set.getName());
+          final Provider<Directory> generatedBase = project.getLayout().getBuildDirectory().dir("generated");
+
+          // generate a task for each template set
           final var internal = (TemplateSetInternal) templateSet;
           final Provider<Directory> templateSetOutput = generatedBase.map(internal::resolveOutputRoot).map(dir -> dir.dir("blossom/" + set.getName() + "/" + templateSet.getName()));
           internal.templates(baseInputDir.dir(templateSet.getName() + "-templates"));
           internal.getTemplates().getDestinationDirectory().set(templateSetOutput);
+          final Provider<RegularFile> manifestFile = generatedBase.map(dir -> dir.file("blossom-manifests/" + set.getName() + "/" + templateSet.getName() + ".txt"));
           final TaskProvider<GenerateTemplates> generateTask = tasks.register(set.getTaskName("generate", templateSet.getName() + "Templates"), GenerateTemplates.class, task -> {
             task.setGroup(Blossom.GENERATION_GROUP);
             task.getBaseSet().set(templateSet);
+            task.getManifestFile().set(manifestFile);
+            task.getMetricsReportDirectory().convention(project.getLayout().getBuildDirectory().dir("reports/blossom/" + set.getName() + "/" + templateSet.getName()));
+            task.getPebbleClasspath().from(blossomRuntimeConfig.map(it -> it.getIncoming().getFiles()));
+          });
+          tasks.register(set.getTaskName("plan", templateSet.getName() + "Templates"), PlanTemplates.class, task -> {
+            task.setGroup(Blossom.GENERATION_GROUP);
+            task.setDescription("Lists the files that would be generated from the " + templateSet.getName() + " templates of source set " + set.getName() + ", without rendering them.");
+            task.getBaseSet().set(templateSet);
+            task.getPlanFile().set(project.getLayout().getBuildDirectory().file("blossom-plans/" + set.getName() + "/" + templateSet.getName() + ".json"));
             task.getPebbleClasspath().from(blossomRuntimeConfig.map(it -> it.getIncoming().getFiles()));
+            task.getWorkerIsolation().convention(generateTask.flatMap(GenerateTemplates::getWorkerIsolation));
+            task.getMaxHeapSize().convention(generateTask.flatMap(GenerateTemplates::getMaxHeapSize));
+            task.getJvmArgs().convention(generateTask.flatMap(GenerateTemplates::getJvmArgs));
           });
+          if (batchTask != null) {
+            // the batch does the actual work, and this task only remains so that anything depending on it still works
+            batchTask.configure(batch -> {
+              final GenerateTemplateBatch.Entry entry = project.getObjects().newInstance(GenerateTemplateBatch.Entry.class);
+              entry.getBaseSet().set(templateSet);
+              entry.getSourceDirectories().from(templateSet.getTemplates().getSourceDirectories());
+              entry.getIncludesDirectories().from(templateSet.getIncludes().getSourceDirectories());
+              entry.getOutputDir().set(templateSetOutput);
+              entry.getManifestFile().set(manifestFile);
+              final String taskName = generateTask.getName();
+              entry.getIgnoredSettings().addAll(generateTask.flatMap(GenerateTemplates::getShardCount)
+                .map(count -> count > 1 ? List.of("shardCount of " + taskName) : List.<String>of()));
+              entry.getIgnoredSettings().addAll(generateTask.flatMap(GenerateTemplates::getRenderCacheDirectory)
+                .map(dir -> List.of("renderCacheDirectory of " + taskName))
+                .orElse(List.of()));
+              entry.getIgnoredSettings().addAll(generateTask.flatMap(GenerateTemplates::getReportMetrics)
+                .map(report -> report ? List.of("reportMetrics of " + taskName) : List.<String>of()));
+              batch.getEntries().add(entry);
+            });
+            generateTask.configure(task -> {
+              task.setEnabled(false);
+              task.dependsOn(batchTask);
+            });
+          }
           outputDirs.add(internal.getTemplates().getDestinationDirectory().map(Directory::getAsFile));
           internal.getTemplates().compiledBy(generateTask, GenerateTemplates::getOutputDir);
 
           // And add the output as a source directory
           internal.registerOutputWithSet(set, generateTask);
-        });
+        }));
       });
     });
   }
 
+  private @Nullable TaskProvider<GenerateTemplateBatch> registerBatchTask(
+    final Project project,
+    final TaskContainer tasks,
+    final NamedDomainObjectProvider<Configuration> blossomRuntimeConfig
+  ) {
+    final boolean batchGeneration = project.getProviders().gradleProperty(BATCH_GENERATION_PROPERTY).map(Boolean::parseBoolean).getOrElse(false);
+    if (!batchGeneration) {
+      return null;
+    }
+
+    return tasks.register("generateTemplateBatch", GenerateTemplateBatch.class, task -> {
+      task.setGroup(Blossom.GENERATION_GROUP);
+      task.setDescription("Generates every template set of this project in a single worker.");
+      task.getPebbleClasspath().from(blossomRuntimeConfig.map(it -> it.getIncoming().getFiles()));
+    });
+  }
+
   private NamedDomainObjectProvider<Configuration> registerBlossomRuntimeConfig(final DependencyHandler dependencies, final ConfigurationContainer configurations) {
+    // kept separate from the runtime configuration, so declaring extensions doesn't replace its default dependencies
+    final NamedDomainObjectProvider<Configuration> extensionsConfig = configurations.register(BLOSSOM_EXTENSIONS_CONFIG, config -> {
+      config.setDescription("Pebble extensions to register on every Blossom template engine, discovered as services of io.pebbletemplates.pebble.extension.Extension");
+      config.setVisible(false);
+      config.setCanBeConsumed(false);
+      config.setCanBeResolved(false);
+    });
     return configurations.register(BLOSSOM_RUNTIME_CONFIG, config -> {
       config.setDescription("Dependencies used to perform template processing with Blossom. Currently includes Pebble and SnakeYAML Engine");
       config.setVisible(false);
       config.setCanBeConsumed(false);
+      config.extendsFrom(extensionsConfig.get());
       config.defaultDependencies(deps -> {
         deps.add(dependencies.create(SNAKEYAML_ARTIFACT_ID + ':' + BuildParameters.SNAKEYAML_VERSION));
         deps.add(dependencies.create(PEBBLE_ARTIFACT_ID + ':' + BuildParameters.PEBBLE_VERSION));
@@ -116,7 +186,12 @@ public class Blossom implements ProjectPlugin {
 
   private void registerGenerateAllTask(final Project project, final TaskContainer tasks, final SetProperty<File> outputDirs) {
     final TaskProvider<?> generateTemplates = tasks.register("generateTemplates", task -> {
-      task.dependsOn(tasks.withType(GenerateTemplates.class));
+      task.dependsOn((Callable<?>) () -> tasks.withType(GenerateTemplates.class).matching(generate -> ((TemplateSetInternal) generate.getBaseSet().get()).hasTemplates()));
+    });
+    tasks.register("planTemplates", task -> {
+      task.setGroup(Blossom.GENERATION_GROUP);
+      task.setDescription("Lists the files that would be generated from every template set, without rendering them.");
+      task.dependsOn((Callable<?>) () -> tasks.withType(PlanTemplates.class).matching(plan -> ((TemplateSetInternal) plan.getBaseSet().get()).hasTemplates()));
     });
 
     IdeConfigurer.apply(project, new IdeConfigurer.IdeImportAction() {
@@ -0,0 +1,41 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom;
+
+/**
+ * What to do when a template set exceeds its {@link GenerationBudget}.
+ *
+ * @since 2.2.0
+ */
+public enum BudgetEnforcement {
+  /**
+   * Log a warning listing the offending templates and outputs.
+   *
+   * @since 2.2.0
+   */
+  WARN,
+  /**
+   * Fail the generation task, listing the offending templates and outputs.
+   *
+   * @since 2.2.0
+   */
+  FAIL;
+}
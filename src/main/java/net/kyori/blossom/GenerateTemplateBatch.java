@@ -0,0 +1,287 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.inject.Inject;
+import net.kyori.blossom.internal.FileUtils;
+import net.kyori.blossom.internal.worker.GenerateBatchWorker;
+import net.kyori.blossom.internal.worker.GenerationRequest;
+import net.kyori.blossom.internal.worker.OutputManifest;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Generate every template set of a project in a single worker invocation.
+ *
+ * <p>This is used instead of the per-set {@link GenerateTemplates} tasks when batch generation is enabled. Sharing one
+ * worker lets every set reuse the same loaded classes, parsed data files, and engines for identical template
+ * directories. Each set still gets its own output directory and manifest, but batches are always regenerated in full
+ * rather than incrementally, and sharding, render caching, metrics and budgets are not applied.</p>
+ *
+ * @since 2.2.0
+ */
+@CacheableTask
+public abstract class GenerateTemplateBatch extends DefaultTask {
+  private final List<Entry> entries = new ArrayList<>();
+
+  /**
+   * The template sets to generate.
+   *
+   * @return the mutable list of entries
+   * @since 2.2.0
+   */
+  @Nested
+  public @NotNull List<Entry> getEntries() {
+    return this.entries;
+  }
+
+  /**
+   * The worker classpath. This should include Pebble and SnakeYAML engine.
+   *
+   * @return the worker classpath
+   * @since 2.2.0
+   */
+  @Classpath
+  public abstract @NotNull ConfigurableFileCollection getPebbleClasspath();
+
+  /**
+   * The isolation mode to use for the generation worker.
+   *
+   * <p>This defaults to {@link WorkerIsolation#CLASSLOADER}.</p>
+   *
+   * @return the worker isolation property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull Property<WorkerIsolation> getWorkerIsolation();
+
+  /**
+   * The maximum heap size for worker processes, when using {@link WorkerIsolation#PROCESS} isolation.
+   *
+   * @return the maximum heap size property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull Property<String> getMaxHeapSize();
+
+  /**
+   * Extra JVM arguments for worker processes, when using {@link WorkerIsolation#PROCESS} isolation.
+   *
+   * @return the JVM arguments property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull ListProperty<String> getJvmArgs();
+
+  /**
+   * Create a new task (NOT to be called directly).
+   *
+   * @since 2.2.0
+   */
+  public GenerateTemplateBatch() {
+    this.getWorkerIsolation().convention(WorkerIsolation.CLASSLOADER);
+  }
+
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
+  @TaskAction
+  void generate() throws IOException {
+    final List<Entry> toGenerate = new ArrayList<>(this.entries.size());
+    final List<GenerationRequest> requests = new ArrayList<>(this.entries.size());
+    final List<Path> manifests = new ArrayList<>(this.entries.size());
+    final String runId = UUID.randomUUID().toString();
+    final List<@Nullable OutputManifest> previousManifests = new ArrayList<>(this.entries.size());
+    for (final Entry entry : this.entries) {
+      final Path outputPath = entry.getOutputDir().get().getAsFile().toPath();
+      final Path manifestPath = entry.getManifestFile().get().getAsFile().toPath();
+      final @Nullable OutputManifest previous = OutputManifest.read(manifestPath);
+      if (entry.getSourceDirectories().getAsFileTree().isEmpty()) {
+        // nothing to generate any more, so nothing should be left over from last time either
+        if (Files.isDirectory(outputPath)) {
+          FileUtils.deleteContents(outputPath);
+        }
+        new OutputManifest().write(manifestPath);
+        continue;
+      }
+
+      final TemplateSet set = entry.getBaseSet().get();
+      GenerateTemplates.requireValidParallelism(set);
+      this.warnAboutIgnoredSettings(entry, set);
+      GenerateTemplates.prepareOutputDirectory(outputPath, previous, set.getWriteIfChanged().get());
+      final Path entryTemporaryDir = this.getTemporaryDir().toPath().resolve("set-" + toGenerate.size());
+      // if generation fails part way through, the manifest no longer describes the output directory
+      final Path previousManifestPath = GenerateTemplates.takePreviousManifest(manifestPath, entryTemporaryDir);
+      final Path manifestOutput = entryTemporaryDir.resolve("manifest.txt");
+      Files.deleteIfExists(manifestOutput);
+      toGenerate.add(entry);
+      manifests.add(manifestOutput);
+      previousManifests.add(previous);
+      requests.add(new GenerationRequest(
+        set,
+        entry.getSourceDirectories(),
+        entry.getIncludesDirectories(),
+        outputPath,
+        entry.getNormalizedHeader().getOrNull(),
+        previousManifestPath,
+        manifestOutput,
+        runId
+      ));
+    }
+    if (requests.isEmpty()) return;
+
+    final WorkerIsolation isolation = this.getWorkerIsolation().get();
+    final WorkQueue queue = GenerateTemplates.workQueue(this.getWorkerExecutor(), isolation, this.getPebbleClasspath(), this.getMaxHeapSize(), this.getJvmArgs());
+    queue.submit(GenerateBatchWorker.class, spec -> {
+      spec.getRequests().set(requests);
+      if (isolation == WorkerIsolation.NONE) {
+        spec.getWorkerClasspath().from(this.getPebbleClasspath());
+      }
+    });
+    queue.await();
+
+    for (int i = 0; i < toGenerate.size(); i++) {
+      final Entry entry = toGenerate.get(i);
+      final Path manifestPath = entry.getManifestFile().get().getAsFile().toPath();
+      GenerateTemplates.finishOutputs(
+        List.of(manifests.get(i)),
+        entry.getOutputDir().get().getAsFile().toPath(),
+        previousManifests.get(i),
+        entry.getBaseSet().get().getWriteIfChanged().get(),
+        manifestPath
+      );
+    }
+  }
+
+  private void warnAboutIgnoredSettings(final Entry entry, final TemplateSet set) {
+    final List<String> ignored = new ArrayList<>(entry.getIgnoredSettings().getOrElse(List.of()));
+    if (GenerateTemplates.hasLimits(set.getBudget())) {
+      ignored.add("the generation budget of template set " + set.getName());
+    }
+    if (!ignored.isEmpty()) {
+      this.getLogger().warn("Batch generation does not support the following settings, which will be ignored: {}", String.join(", ", ignored));
+    }
+  }
+
+  /**
+   * A single template set in a batch.
+   *
+   * @since 2.2.0
+   */
+  @ApiStatus.NonExtendable
+  public interface Entry {
+    /**
+     * The set the templates are generated from.
+     *
+     * @return the template set
+     * @since 2.2.0
+     */
+    @Nested
+    @NotNull Property<TemplateSet> getBaseSet();
+
+    /**
+     * Source directories for templates to process.
+     *
+     * @return the source directories
+     * @since 2.2.0
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    @NotNull ConfigurableFileCollection getSourceDirectories();
+
+    /**
+     * Files that can be included in templates, but that are not themselves templates.
+     *
+     * @return the include directories
+     * @since 2.2.0
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    @NotNull ConfigurableFileCollection getIncludesDirectories();
+
+    /**
+     * The header inserted at the top of generated files, with line endings normalized.
+     *
+     * @return the normalized header
+     * @since 2.2.0
+     */
+    @Input
+    @Optional
+    default @NotNull Provider<String> getNormalizedHeader() {
+      return GenerateTemplates.normalizedHeader(this.getBaseSet());
+    }
+
+    /**
+     * Destination directory for template output.
+     *
+     * @return the destination directory
+     * @since 2.2.0
+     */
+    @OutputDirectory
+    @NotNull DirectoryProperty getOutputDir();
+
+    /**
+     * A record of the outputs produced by each template.
+     *
+     * @return the manifest file
+     * @since 2.2.0
+     */
+    @LocalState
+    @NotNull RegularFileProperty getManifestFile();
+
+    /**
+     * Descriptions of settings of the per-set generation task that batch generation does not apply, to warn about.
+     *
+     * @return the ignored settings
+     * @since 2.2.0
+     */
+    @Internal
+    @NotNull ListProperty<String> getIgnoredSettings();
+  }
+}
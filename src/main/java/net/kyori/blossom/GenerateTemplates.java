@@ -23,30 +23,59 @@ package net.kyori.blossom;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import net.kyori.blossom.internal.FileUtils;
+import net.kyori.blossom.internal.worker.BudgetMeasurements;
 import net.kyori.blossom.internal.worker.GenerateWorker;
+import net.kyori.blossom.internal.worker.OutputManifest;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
 import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.SkipWhenEmpty;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
 import org.gradle.workers.WorkerExecutor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Generate real files based on templates and input parameters.
  *
+ * <p>This task is cacheable, and relocatable: template and data files are tracked relative to their source directories,
+ * so a build cache entry produced in one checkout can be reused by another checkout in a different location.</p>
+ *
  * @since 2.0.0
  */
+@CacheableTask
 public abstract class GenerateTemplates extends DefaultTask {
+  private static final int MAX_BUDGET_OFFENDERS = 10;
 
   /**
    * The set the template is generated from.
@@ -66,6 +95,7 @@ public abstract class GenerateTemplates extends DefaultTask {
    * @since 2.0.0
    */
   @InputFiles
+  @PathSensitive(PathSensitivity.RELATIVE)
   protected abstract @NotNull ConfigurableFileCollection getIncludesDirectories();
 
   /**
@@ -75,9 +105,24 @@ public abstract class GenerateTemplates extends DefaultTask {
    * @since 2.0.0
    */
   @InputFiles
+  @PathSensitive(PathSensitivity.RELATIVE)
   @SkipWhenEmpty
   protected abstract @NotNull ConfigurableFileCollection getSourceDirectories();
 
+  /**
+   * The header inserted at the top of generated files, with line endings normalized.
+   *
+   * <p>Derived from the TemplateSet.</p>
+   *
+   * @return the normalized header
+   * @since 2.2.0
+   */
+  @Input
+  @Optional
+  protected @NotNull Provider<String> getNormalizedHeader() {
+    return normalizedHeader(this.getBaseSet());
+  }
+
   /**
    * Destination directory for template output.
    *
@@ -87,6 +132,19 @@ public abstract class GenerateTemplates extends DefaultTask {
   @OutputDirectory
   public abstract @NotNull DirectoryProperty getOutputDir();
 
+  /**
+   * A record of the outputs produced by each template, used to perform incremental generation.
+   *
+   * <p>The manifest also records the content hash of every template, so the task can work out which templates changed
+   * since the last run itself. It is local state rather than an output, so it is never restored from the build cache,
+   * and a missing manifest simply means the next run regenerates everything.</p>
+   *
+   * @return the manifest file
+   * @since 2.2.0
+   */
+  @LocalState
+  public abstract @NotNull RegularFileProperty getManifestFile();
+
   /**
    * The worker classpath. This should include Pebble and SnakeYAML engine.
    *
@@ -96,6 +154,99 @@ public abstract class GenerateTemplates extends DefaultTask {
   @Classpath
   public abstract ConfigurableFileCollection getPebbleClasspath();
 
+  /**
+   * The number of shards to split templates across.
+   *
+   * <p>Each shard is submitted as a separate unit of work, which allows Gradle to spread a large template set over several workers.
+   * This defaults to {@code 1}.</p>
+   *
+   * @return the shard count property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull Property<Integer> getShardCount();
+
+  /**
+   * The isolation mode to use for the generation worker.
+   *
+   * <p>This defaults to {@link WorkerIsolation#CLASSLOADER}.</p>
+   *
+   * @return the worker isolation property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull Property<WorkerIsolation> getWorkerIsolation();
+
+  /**
+   * The maximum heap size for worker processes, when using {@link WorkerIsolation#PROCESS} isolation.
+   *
+   * <p>This uses the same format as {@link org.gradle.process.JavaForkOptions#setMaxHeapSize(String)}.</p>
+   *
+   * @return the maximum heap size property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull Property<String> getMaxHeapSize();
+
+  /**
+   * Extra JVM arguments for worker processes, when using {@link WorkerIsolation#PROCESS} isolation.
+   *
+   * <p>Worker processes are only reused between tasks with the same JVM arguments, so these are best kept the same
+   * for every template set in a build.</p>
+   *
+   * @return the JVM arguments property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull ListProperty<String> getJvmArgs();
+
+  /**
+   * A directory to cache rendered template outputs in, to be reused by later builds.
+   *
+   * <p>Cache entries are keyed by the contents of each template and everything it includes, plus the data it is rendered with,
+   * so the same directory can safely be shared between several template sets and projects, for example a directory within
+   * the Gradle user home. No cache is used if this is not set.</p>
+   *
+   * @return the render cache directory property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull DirectoryProperty getRenderCacheDirectory();
+
+  /**
+   * Whether to record how long each phase of generation and each output takes.
+   *
+   * <p>When enabled, a JSON and an HTML report are written to the {@link #getMetricsReportDirectory() metrics report directory}
+   * every time templates are generated. This defaults to {@code false}.</p>
+   *
+   * @return the report metrics property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull Property<Boolean> getReportMetrics();
+
+  /**
+   * The directory to write generation metrics reports to.
+   *
+   * <p>This defaults to {@code build/reports/blossom/<source set>/<template set>}.</p>
+   *
+   * @return the metrics report directory property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull DirectoryProperty getMetricsReportDirectory();
+
+  /**
+   * The number of slowest templates to list in the build log when {@link #getReportMetrics() reporting metrics}.
+   *
+   * <p>Times are summed across all variants of a template. This defaults to {@code 0}, logging nothing.</p>
+   *
+   * @return the number of templates to log
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull Property<Integer> getSlowestTemplatesToLog();
+
   /**
    * Create a new task (NOT to be called directly).
    *
@@ -104,48 +255,364 @@ public abstract class GenerateTemplates extends DefaultTask {
   public GenerateTemplates() {
     this.getIncludesDirectories().from(this.getBaseSet().map(set -> set.getIncludes().getSourceDirectories()));
     this.getSourceDirectories().from(this.getBaseSet().map(set -> set.getTemplates().getSourceDirectories()));
+    this.getShardCount().convention(1);
+    this.getWorkerIsolation().convention(WorkerIsolation.CLASSLOADER);
+    this.getReportMetrics().convention(false);
+    this.getSlowestTemplatesToLog().convention(0);
   }
 
   @Inject
   protected abstract WorkerExecutor getWorkerExecutor();
 
+  // This action deliberately does not take InputChanges: Gradle would then empty the output directory before every
+  // non-incremental execution, which is exactly when precise cleanup and write-if-changed matter. Instead the worker
+  // compares template hashes against the manifest to work out what changed.
   @TaskAction
   void generate() throws IOException {
     final Path outputPath = this.getOutputDir().get().getAsFile().toPath();
+    final Path manifestPath = this.getManifestFile().get().getAsFile().toPath();
+    // we can only work incrementally, or clean up precisely, if we know what was produced last time
+    final @Nullable OutputManifest previous = OutputManifest.read(manifestPath);
+    final boolean incremental = previous != null;
+    final boolean writeIfChanged = this.getBaseSet().get().getWriteIfChanged().get();
+    prepareOutputDirectory(outputPath, previous, writeIfChanged);
+    // if generation fails part way through, the manifest no longer describes the output directory
+    final Path previousManifestPath = takePreviousManifest(manifestPath, this.getTemporaryDir().toPath());
+
+    final WorkerIsolation isolation = this.getWorkerIsolation().get();
+    final WorkQueue queue = workQueue(this.getWorkerExecutor(), isolation, this.getPebbleClasspath(), this.getMaxHeapSize(), this.getJvmArgs());
+
+    // Each shard processes a subset of the templates, and reports its outputs in a separate manifest
+    final int shardCount = this.getShardCount().get();
+    if (shardCount < 1) {
+      throw new InvalidUserDataException("Shard count for " + this.getPath() + " must be at least 1, but was " + shardCount);
+    }
+    requireValidParallelism(this.getBaseSet().get());
+    final boolean reportMetrics = this.getReportMetrics().get();
+    if (reportMetrics && this.getMetricsReportDirectory().isPresent()) {
+      // clear out reports from any previous run, which may have used a different number of shards
+      final Path reportDirectory = this.getMetricsReportDirectory().get().getAsFile().toPath();
+      if (Files.isDirectory(reportDirectory)) {
+        FileUtils.deleteContents(reportDirectory);
+      }
+    }
+    final GenerationBudget budget = this.getBaseSet().get().getBudget();
+    final boolean checkBudget = hasLimits(budget);
+    // lets shards running in the same worker share what they learn about the template directories
+    final String runId = UUID.randomUUID().toString();
+    final List<Path> shardManifests = new ArrayList<>(shardCount);
+    final List<Path> shardMeasurements = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      final int shardIndex = i;
+      final Path shardManifest = this.getTemporaryDir().toPath().resolve("manifest-" + shardIndex + ".txt");
+      Files.deleteIfExists(shardManifest);
+      shardManifests.add(shardManifest);
+      final Path shardMeasurement = this.getTemporaryDir().toPath().resolve("budget-" + shardIndex + ".txt");
+      Files.deleteIfExists(shardMeasurement);
+      if (checkBudget) {
+        shardMeasurements.add(shardMeasurement);
+      }
+
+      queue.submit(GenerateWorker.class, spec -> {
+        configureSetParameters(spec, this.getBaseSet(), this.getSourceDirectories(), this.getIncludesDirectories());
+
+        // generation options
+        spec.getWriteIfChanged().set(writeIfChanged);
+        spec.getParallelism().set(this.getBaseSet().flatMap(TemplateSet::getParallelism));
+        spec.getFlightRecorderEvents().set(this.getBaseSet().flatMap(TemplateSet::getFlightRecorderEvents));
+        spec.getShardIndex().set(shardIndex);
+        spec.getShardCount().set(shardCount);
+        spec.getRunId().set(runId);
+        spec.getRenderCacheDirectory().set(this.getRenderCacheDirectory());
+        if (reportMetrics) {
+          spec.getMetricsReportDirectory().set(this.getMetricsReportDirectory());
+          spec.getSlowestTemplatesToLog().set(this.getSlowestTemplatesToLog());
+        }
+        if (checkBudget) {
+          spec.getBudgetMeasurementsFile().set(shardMeasurement.toFile());
+        }
+        spec.getDestinationDirectory().set(this.getOutputDir());
+        if (isolation == WorkerIsolation.NONE) {
+          spec.getWorkerClasspath().from(this.getPebbleClasspath());
+        }
+
+        // incremental state
+        spec.getIncremental().set(incremental);
+        spec.getPreviousManifest().set(previousManifestPath.toFile());
+        spec.getManifestOutput().set(shardManifest.toFile());
+      });
+    }
+    queue.await();
+
+    // Then merge results, and clean up anything produced last time that was not produced this time around
+    final OutputManifest manifest = finishOutputs(shardManifests, outputPath, previous, writeIfChanged, manifestPath);
+
+    if (checkBudget) {
+      this.checkBudget(budget, shardMeasurements, manifest);
+    }
+  }
+
+  /**
+   * Move the manifest from the last run out of the way, so that it is only present once generation has succeeded.
+   *
+   * @return the new location of the previous manifest, which may not exist
+   */
+  static Path takePreviousManifest(final Path manifestPath, final Path temporaryDirectory) throws IOException {
+    Files.createDirectories(temporaryDirectory);
+    final Path previousManifestPath = temporaryDirectory.resolve("previous-manifest.txt");
+    Files.deleteIfExists(previousManifestPath);
+    if (Files.exists(manifestPath)) {
+      Files.move(manifestPath, previousManifestPath);
+    }
+    return previousManifestPath;
+  }
+
+  /**
+   * Whether a budget sets any limit at all.
+   */
+  static boolean hasLimits(final GenerationBudget budget) {
+    return budget.getMaxTotalRenderTime().isPresent()
+      || budget.getMaxTemplateRenderTime().isPresent()
+      || budget.getMaxOutputBytes().isPresent()
+      || budget.getMaxOutputFiles().isPresent();
+  }
+
+  /**
+   * Reject a parallelism that cannot be used, before it reaches a worker.
+   */
+  static void requireValidParallelism(final TemplateSet set) {
+    final int parallelism = set.getParallelism().get();
+    if (parallelism < 1) {
+      throw new InvalidUserDataException("Parallelism of template set " + set.getName() + " must be at least 1, but was " + parallelism);
+    }
+  }
+
+  /**
+   * Prepare the output directory for generation.
+   */
+  static void prepareOutputDirectory(final Path outputPath, final @Nullable OutputManifest previous, final boolean writeIfChanged) throws IOException {
     if (Files.exists(outputPath)) {
-      // clear out contents
-      FileUtils.deleteContents(outputPath);
+      if (previous == null && !writeIfChanged) {
+        // we don't know what's in there, so clear out contents
+        FileUtils.deleteContents(outputPath);
+      } // otherwise, stale files are removed once we know what has been produced
     } else {
       FileUtils.createDirectoriesSymlinkSafe(outputPath);
     }
+  }
+
+  /**
+   * Create a work queue for generation workers with the requested isolation.
+   */
+  static WorkQueue workQueue(
+    final WorkerExecutor executor,
+    final WorkerIsolation isolation,
+    final FileCollection pebbleClasspath,
+    final Provider<String> maxHeapSize,
+    final Provider<List<String>> jvmArgs
+  ) {
+    switch (isolation) {
+      case NONE:
+        // the worker loads Pebble itself, from a class loader cached across builds
+        return executor.noIsolation();
+      case PROCESS:
+        return executor.processIsolation(spec -> {
+          spec.getClasspath().from(pebbleClasspath);
+          spec.forkOptions(fork -> {
+            if (maxHeapSize.isPresent()) {
+              fork.setMaxHeapSize(maxHeapSize.get());
+            }
+            fork.jvmArgs(jvmArgs.get());
+          });
+        });
+      default:
+        return executor.classLoaderIsolation(spec -> {
+          spec.getClasspath().from(pebbleClasspath);
+        });
+    }
+  }
+
+  /**
+   * Merge the manifests written by each worker, remove anything produced last time that was not produced this time around,
+   * and record the new manifest.
+   */
+  static OutputManifest finishOutputs(
+    final List<Path> shardManifests,
+    final Path outputPath,
+    final @Nullable OutputManifest previous,
+    final boolean writeIfChanged,
+    final Path manifestPath
+  ) throws IOException {
+    final OutputManifest manifest = mergeManifests(shardManifests);
+    if (previous != null) {
+      final Set<String> staleOutputs = previous.allOutputs();
+      staleOutputs.removeAll(manifest.allOutputs());
+      for (final String output : staleOutputs) {
+        OutputManifest.deleteOutput(outputPath, output);
+      }
+    } else if (writeIfChanged) {
+      // the output directory was not cleared before generation
+      manifest.deleteUnknownOutputs(outputPath);
+    }
+    manifest.write(manifestPath);
+    return manifest;
+  }
 
-    this.getWorkerExecutor().classLoaderIsolation(spec -> {
-      spec.getClasspath().from(this.getPebbleClasspath());
-    }).submit(GenerateWorker.class, spec -> {
-      // global params
-      spec.getSetName().set(this.getBaseSet().map(TemplateSet::getName));
-      spec.getGlobalParameters().set(this.getBaseSet().flatMap(TemplateSet::getProperties));
-      spec.getGlobalParameterFiles().from(this.getBaseSet().map(TemplateSet::getPropertyFiles));
+  /**
+   * Configure the worker parameters derived from the template set, shared between generating and planning.
+   */
+  static void configureSetParameters(
+    final GenerateWorker.Params spec,
+    final Provider<TemplateSet> baseSet,
+    final FileCollection sourceDirectories,
+    final FileCollection includesDirectories
+  ) {
+    // global params
+    spec.getSetName().set(baseSet.map(TemplateSet::getName));
+    spec.getGlobalParameters().set(baseSet.flatMap(TemplateSet::getProperties));
+    spec.getGlobalParameterFiles().from(baseSet.map(TemplateSet::getPropertyFiles));
 
-      // variant parameters
-      spec.getVariantParameters().set(this.getBaseSet().map(set ->
-        set.getVariants().getAsMap().entrySet()
+    // variant parameters
+    spec.getVariantParameters().set(baseSet.map(set ->
+      set.getVariants().getAsMap().entrySet()
+      .stream()
+      .collect(Collectors.toMap(Map.Entry::getKey, ent -> ent.getValue().getProperties().getOrElse(Map.of())))
+    ));
+    // variant parameter files
+    spec.getVariantFiles().set(baseSet.map(set ->
+      set.getVariants().getAsMap().entrySet()
         .stream()
-        .collect(Collectors.toMap(Map.Entry::getKey, ent -> ent.getValue().getProperties().getOrElse(Map.of())))
-      ));
-      // variant parameter files
-      spec.getVariantFiles().set(this.getBaseSet().map(set ->
-        set.getVariants().getAsMap().entrySet()
-          .stream()
-          .collect(Collectors.toMap(Map.Entry::getKey, ent -> ent.getValue().getPropertyFiles()))
-      ));
-
-      // general properties
-      spec.getHeader().set(this.getBaseSet().flatMap(TemplateSet::getHeader));
-      spec.getSourceDirectories().from(this.getSourceDirectories());
-      spec.getIncludesDirectories().from(this.getIncludesDirectories());
-      spec.getDestinationDirectory().set(this.getOutputDir());
-    });
+        .collect(Collectors.toMap(Map.Entry::getKey, ent -> ent.getValue().getPropertyFiles()))
+    ));
+
+    // variant matrix, expanded by the worker
+    spec.getVariantMatrixAxes().set(baseSet.flatMap(set -> set.getVariantMatrix().getAxes()));
+    spec.getVariantMatrixExclusions().set(baseSet.flatMap(set -> set.getVariantMatrix().getExclusions()));
+
+    // general properties
+    spec.getHeader().set(normalizedHeader(baseSet));
+    spec.getSourceDirectories().from(sourceDirectories);
+    spec.getIncludesDirectories().from(includesDirectories);
+  }
+
+  static Provider<String> normalizedHeader(final Provider<TemplateSet> baseSet) {
+    return baseSet.flatMap(TemplateSet::getHeader).map(header -> header.replace("\r\n", "\n").replace('\r', '\n'));
   }
 
+  private void checkBudget(final GenerationBudget budget, final List<Path> shardMeasurements, final OutputManifest manifest) throws IOException {
+    final BudgetMeasurements measurements = new BudgetMeasurements();
+    for (final Path shardMeasurement : shardMeasurements) {
+      final @Nullable BudgetMeasurements shard = BudgetMeasurements.read(shardMeasurement);
+      if (shard == null) {
+        throw new GradleException("Blossom worker did not produce budget measurements at " + shardMeasurement);
+      }
+      measurements.merge(shard);
+      Files.delete(shardMeasurement);
+    }
+
+    final List<String> violations = new ArrayList<>();
+    if (budget.getMaxTotalRenderTime().isPresent()) {
+      final long limit = budget.getMaxTotalRenderTime().get().toNanos();
+      final long total = measurements.totalNanos();
+      if (total > limit) {
+        violations.add("Total render time of " + formatNanos(total) + " exceeds the limit of " + formatNanos(limit) + ". Slowest templates:"
+          + offenders(measurements.templateNanos(), 0, GenerateTemplates::formatNanos));
+      }
+    }
+    if (budget.getMaxTemplateRenderTime().isPresent()) {
+      final long limit = budget.getMaxTemplateRenderTime().get().toNanos();
+      final String offenders = offenders(measurements.templateNanos(), limit, GenerateTemplates::formatNanos);
+      if (!offenders.isEmpty()) {
+        violations.add("Templates exceeded the render time limit of " + formatNanos(limit) + ":" + offenders);
+      }
+    }
+    if (budget.getMaxOutputBytes().isPresent()) {
+      final long limit = budget.getMaxOutputBytes().get();
+      final String offenders = offenders(measurements.outputBytes(), limit, bytes -> bytes + " bytes");
+      if (!offenders.isEmpty()) {
+        violations.add("Outputs exceeded the size limit of " + limit + " bytes:" + offenders);
+      }
+    }
+    if (budget.getMaxOutputFiles().isPresent()) {
+      final int limit = budget.getMaxOutputFiles().get();
+      final int total = manifest.allOutputs().size();
+      if (total > limit) {
+        final Map<String, Long> outputsByTemplate = new HashMap<>();
+        for (final String template : manifest.templates()) {
+          outputsByTemplate.put(template, (long) manifest.outputs(template).size());
+        }
+        violations.add(total + " output files exceeds the limit of " + limit + ". Templates with the most outputs:"
+          + offenders(outputsByTemplate, 0, count -> count + " files"));
+      }
+    }
+
+    if (violations.isEmpty()) return;
+
+    final String message = "Template set '" + this.getBaseSet().get().getName() + "' exceeded its generation budget:\n- "
+      + String.join("\n- ", violations);
+    if (budget.getEnforcement().get() == BudgetEnforcement.FAIL) {
+      throw new GradleException(message);
+    } else {
+      this.getLogger().warn(message);
+    }
+  }
+
+  // every entry with a value above the threshold, largest first, one per line
+  private static String offenders(final Map<String, Long> values, final long threshold, final LongFunction<String> format) {
+    final List<Map.Entry<String, Long>> over = new ArrayList<>();
+    for (final Map.Entry<String, Long> entry : values.entrySet()) {
+      if (entry.getValue() > threshold) {
+        over.add(entry);
+      }
+    }
+    over.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+    final StringBuilder ret = new StringBuilder();
+    for (int i = 0; i < over.size() && i < MAX_BUDGET_OFFENDERS; i++) {
+      ret.append("\n    ").append(format.apply(over.get(i).getValue())).append("  ").append(over.get(i).getKey());
+    }
+    if (over.size() > MAX_BUDGET_OFFENDERS) {
+      ret.append("\n    ... and ").append(over.size() - MAX_BUDGET_OFFENDERS).append(" more");
+    }
+    return ret.toString();
+  }
+
+  private static String formatNanos(final long nanos) {
+    return String.format(Locale.ROOT, "%.1f ms", nanos / 1_000_000d);
+  }
+
+  private static OutputManifest mergeManifests(final List<Path> shardManifests) throws IOException {
+    final OutputManifest merged = new OutputManifest();
+    final Map<String, String> owners = new HashMap<>();
+    final List<String> collisions = new ArrayList<>();
+    for (final Path shardManifest : shardManifests) {
+      final @Nullable OutputManifest shard = OutputManifest.read(shardManifest);
+      if (shard == null) {
+        throw new GradleException("Blossom worker did not produce an output manifest at " + shardManifest);
+      }
+      for (final String template : shard.templates()) {
+        for (final String output : shard.outputs(template)) {
+          final @Nullable String existing = owners.putIfAbsent(output, template);
+          if (existing != null) {
+            collisions.add("Output file " + output + " (from template " + template + ") has already been written by template " + existing);
+          }
+          merged.put(template, output, shard.hash(template, output));
+          final @Nullable String stamp = shard.stamp(output);
+          if (stamp != null) {
+            merged.stamp(output, stamp);
+          }
+        }
+      }
+      shard.sources().forEach(merged::source);
+      if (merged.inputs() == null) {
+        merged.inputs(shard.inputs());
+      }
+      Files.delete(shardManifest);
+    }
+
+    if (!collisions.isEmpty()) {
+      throw new InvalidUserDataException("Multiple templates produced the same output:\n- " + String.join("\n- ", collisions));
+    }
+    return merged;
+  }
 }
@@ -0,0 +1,82 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom;
+
+import java.time.Duration;
+import org.gradle.api.provider.Property;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Limits on how expensive generating a template set may get.
+ *
+ * <p>Every limit is unset by default, meaning unlimited. When any limit is exceeded, the generation task warns or fails
+ * according to {@link #getEnforcement()}, listing the worst offenders first.</p>
+ *
+ * <p>Time limits only cover templates that were actually rendered in a run, so incremental runs that only render a few
+ * templates are measured against the same limits as full runs.</p>
+ *
+ * @since 2.2.0
+ */
+@ApiStatus.NonExtendable
+public interface GenerationBudget {
+  /**
+   * The maximum total time spent parsing, rendering and writing every output in a run, summed across threads and shards.
+   *
+   * @return the maximum total render time property
+   * @since 2.2.0
+   */
+  @NotNull Property<Duration> getMaxTotalRenderTime();
+
+  /**
+   * The maximum time spent parsing, rendering and writing a single template, summed across all of its variants.
+   *
+   * @return the maximum template render time property
+   * @since 2.2.0
+   */
+  @NotNull Property<Duration> getMaxTemplateRenderTime();
+
+  /**
+   * The maximum size of any single output file, in bytes.
+   *
+   * @return the maximum output size property
+   * @since 2.2.0
+   */
+  @NotNull Property<Long> getMaxOutputBytes();
+
+  /**
+   * The maximum number of output files the template set may produce.
+   *
+   * @return the maximum output file count property
+   * @since 2.2.0
+   */
+  @NotNull Property<Integer> getMaxOutputFiles();
+
+  /**
+   * What to do when a limit is exceeded.
+   *
+   * <p>This defaults to {@link BudgetEnforcement#FAIL}.</p>
+   *
+   * @return the enforcement property
+   * @since 2.2.0
+   */
+  @NotNull Property<BudgetEnforcement> getEnforcement();
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom;
+
+import java.util.UUID;
+import javax.inject.Inject;
+import net.kyori.blossom.internal.worker.GenerateWorker;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Work out which files a template set will generate, without rendering any templates.
+ *
+ * <p>Only file names and variant data are evaluated, so this is cheap enough to run whenever tooling needs to know about
+ * generated files. The plan is written as a JSON document of the form:</p>
+ *
+ * <pre>{@code
+ * {
+ *   "version": 1,
+ *   "templateSet": "java",
+ *   "outputs": [
+ *     {
+ *       "output": "com/example/IntBox.java",
+ *       "template": "com/example/{{ type }}Box.java.peb",
+ *       "variant": "int",
+ *       "templateHash": "<hash of the template file>",
+ *       "inputFingerprint": "<hash of the template, everything it includes, variant data and header>"
+ *     }
+ *   ]
+ * }
+ * }</pre>
+ *
+ * <p>Output and template paths always use {@code /} as a separator, and {@code variant} is {@code null} when the
+ * template set has no variants.</p>
+ *
+ * @since 2.2.0
+ */
+public abstract class PlanTemplates extends DefaultTask {
+
+  /**
+   * The set to plan generation for.
+   *
+   * @return the template set
+   * @since 2.2.0
+   */
+  @Nested
+  public abstract @NotNull Property<TemplateSet> getBaseSet();
+
+  /**
+   * Files that can be included in templates, but that are not themselves templates.
+   *
+   * <p>Derived from the TemplateSet.</p>
+   *
+   * @return the files to include
+   * @since 2.2.0
+   */
+  @InputFiles
+  @PathSensitive(PathSensitivity.RELATIVE)
+  protected abstract @NotNull ConfigurableFileCollection getIncludesDirectories();
+
+  /**
+   * Source directory for templates to process.
+   *
+   * @return the source directory
+   * @since 2.2.0
+   */
+  @InputFiles
+  @PathSensitive(PathSensitivity.RELATIVE)
+  protected abstract @NotNull ConfigurableFileCollection getSourceDirectories();
+
+  /**
+   * The file to write the generation plan to.
+   *
+   * @return the plan file
+   * @since 2.2.0
+   */
+  @OutputFile
+  public abstract @NotNull RegularFileProperty getPlanFile();
+
+  /**
+   * The worker classpath. This should include Pebble and SnakeYAML engine.
+   *
+   * @return the worker classpath
+   * @since 2.2.0
+   */
+  @Classpath
+  public abstract ConfigurableFileCollection getPebbleClasspath();
+
+  /**
+   * The isolation mode to use for the planning worker.
+   *
+   * <p>For template sets registered by the plugin, this defaults to the isolation mode of the matching generate task, so that
+   * with {@link WorkerIsolation#NONE} or {@link WorkerIsolation#PROCESS} both reuse the same class loader or worker process.</p>
+   *
+   * @return the worker isolation property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull Property<WorkerIsolation> getWorkerIsolation();
+
+  /**
+   * The maximum heap size for worker processes, when using {@link WorkerIsolation#PROCESS} isolation.
+   *
+   * @return the maximum heap size property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull Property<String> getMaxHeapSize();
+
+  /**
+   * Extra JVM arguments for worker processes, when using {@link WorkerIsolation#PROCESS} isolation.
+   *
+   * @return the JVM arguments property
+   * @since 2.2.0
+   */
+  @Internal
+  public abstract @NotNull ListProperty<String> getJvmArgs();
+
+  /**
+   * Create a new task (NOT to be called directly).
+   *
+   * @since 2.2.0
+   */
+  public PlanTemplates() {
+    this.getWorkerIsolation().convention(WorkerIsolation.CLASSLOADER);
+    this.getIncludesDirectories().from(this.getBaseSet().map(set -> set.getIncludes().getSourceDirectories()));
+    this.getSourceDirectories().from(this.getBaseSet().map(set -> set.getTemplates().getSourceDirectories()));
+  }
+
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
+  @TaskAction
+  void plan() {
+    final WorkerIsolation isolation = this.getWorkerIsolation().get();
+    final WorkQueue queue = GenerateTemplates.workQueue(this.getWorkerExecutor(), isolation, this.getPebbleClasspath(), this.getMaxHeapSize(), this.getJvmArgs());
+    queue.submit(GenerateWorker.class, spec -> {
+      GenerateTemplates.configureSetParameters(spec, this.getBaseSet(), this.getSourceDirectories(), this.getIncludesDirectories());
+      spec.getRunId().set(UUID.randomUUID().toString());
+      if (isolation == WorkerIsolation.NONE) {
+        spec.getWorkerClasspath().from(this.getPebbleClasspath());
+      }
+      spec.getPlanOutput().set(this.getPlanFile());
+    });
+  }
+}
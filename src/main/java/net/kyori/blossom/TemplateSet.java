@@ -34,7 +34,9 @@ import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
-import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.work.NormalizeLineEndings;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
@@ -54,10 +56,14 @@ public interface TemplateSet extends Named {
   /**
    * A collection of data files in YAML format.
    *
+   * <p>Files ending in {@code .json} are read as JSON, and files ending in {@code .jsonl} or {@code .ndjson} as JSON Lines.</p>
+   *
    * @return the data file collection
    * @since 2.0.0
    */
   @InputFiles
+  @PathSensitive(PathSensitivity.RELATIVE)
+  @NormalizeLineEndings
   @NotNull ConfigurableFileCollection getPropertyFiles();
 
   /**
@@ -106,15 +112,81 @@ public interface TemplateSet extends Named {
   /**
    * A literal header to insert at the top of generated source files.
    *
-   * <p>This property is optional.</p>
+   * <p>This property is optional. Line endings are normalized to {@code \n}, so generated output does not depend on how
+   * the build script was checked out.</p>
    *
    * @return the header
    * @since 2.0.0
    */
-  @Input
-  @Optional
+  @Internal // tracked in normalized form by the generation task
   @NotNull Property<String> getHeader();
 
+  /**
+   * Whether to only write output files whose contents have changed since the last generation.
+   *
+   * <p>When enabled, each output is rendered in memory and compared with the file already on disk. Unchanged files are left
+   * untouched, which preserves their timestamps for incremental compilation and other tasks consuming the generated output.
+   * This also holds when every template is rendered again, such as after a property change or when the output manifest has been lost.</p>
+   *
+   * <p>This defaults to {@code false}.</p>
+   *
+   * @return the write-if-changed property
+   * @since 2.2.0
+   */
+  @Internal
+  @NotNull Property<Boolean> getWriteIfChanged();
+
+  /**
+   * The maximum number of threads to use when rendering templates in this set.
+   *
+   * <p>Each combination of template and variant is rendered as an independent unit of work. Values greater
+   * than {@code 1} allow large template sets to take advantage of multiple cores.</p>
+   *
+   * <p>This defaults to {@code 1}, rendering every template sequentially.</p>
+   *
+   * @return the parallelism property
+   * @since 2.2.0
+   */
+  @Internal
+  @NotNull Property<Integer> getParallelism();
+
+  /**
+   * Whether to emit Java Flight Recorder events while generating this set.
+   *
+   * <p>When enabled, parsing, rendering and writing each template, loading data files, and looking up templates are
+   * recorded as events in the {@code Blossom} category of any active recording, so they can be correlated with GC and I/O
+   * activity in the rest of the build. Events cost nothing when this is disabled.</p>
+   *
+   * <p>This defaults to {@code false}.</p>
+   *
+   * @return the flight recorder events property
+   * @since 2.2.0
+   */
+  @Internal
+  @NotNull Property<Boolean> getFlightRecorderEvents();
+
+  /**
+   * Limits on the time and output size of generating this set.
+   *
+   * <p>Budgets catch templates that gradually become expensive, like a macro that loops over a growing data list,
+   * before they become a problem for everyone building the project.</p>
+   *
+   * @return the generation budget
+   * @since 2.2.0
+   */
+  @Internal
+  @NotNull GenerationBudget getBudget();
+
+  /**
+   * Configure the generation budget.
+   *
+   * @param configureAction an action to configure the budget
+   * @since 2.2.0
+   */
+  default void budget(final @NotNull Action<? super GenerationBudget> configureAction) {
+    Configurable.configure(this.getBudget(), configureAction);
+  }
+
   /**
    * A container of template variants.
    *
@@ -148,6 +220,25 @@ public interface TemplateSet extends Named {
     Configurable.configure(this.getVariants(), configureAction);
   }
 
+  /**
+   * A matrix of variants, produced from every combination of values across several axes.
+   *
+   * @return the variant matrix
+   * @since 2.2.0
+   */
+  @Nested
+  @NotNull VariantMatrix getVariantMatrix();
+
+  /**
+   * Configure the variant matrix.
+   *
+   * @param configureAction an action to configure the variant matrix
+   * @since 2.2.0
+   */
+  default void variantMatrix(final @NotNull Action<VariantMatrix> configureAction) {
+    Configurable.configure(this.getVariantMatrix(), configureAction);
+  }
+
   /**
    * Directories containing templates.
    *
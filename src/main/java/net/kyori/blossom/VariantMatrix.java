@@ -0,0 +1,86 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom;
+
+import java.util.List;
+import java.util.Map;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.tasks.Input;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A matrix of variants, produced from every combination of values across several axes.
+ *
+ * <p>Each axis becomes a template variable, so a matrix with a {@code type} axis of {@code int} and {@code long} and a
+ * {@code wrapper} axis of {@code Mutable} and {@code Immutable} produces four variants, with {@code type} and {@code wrapper}
+ * set to the appropriate values in each. Variant names are made of the value for each axis joined with {@code -},
+ * in the order axes were declared (like {@code int-Mutable}).</p>
+ *
+ * <p>Combinations are only expanded when templates are generated, so large matrices are cheap to declare. Matrix variants are
+ * produced in addition to any variants declared in {@link TemplateSet#getVariants()}.</p>
+ *
+ * @since 2.2.0
+ */
+@ApiStatus.NonExtendable
+public interface VariantMatrix {
+  /**
+   * The axes of this matrix, mapping axis names to their possible values.
+   *
+   * @return the axes property
+   * @since 2.2.0
+   */
+  @Input
+  @NotNull MapProperty<String, List<String>> getAxes();
+
+  /**
+   * Add an axis to this matrix.
+   *
+   * @param name the axis name, used as the template variable name
+   * @param values the possible values for the axis
+   * @since 2.2.0
+   */
+  default void axis(final @NotNull String name, final @NotNull String@NotNull... values) {
+    this.getAxes().put(name, List.of(values));
+  }
+
+  /**
+   * Combinations that should not be produced.
+   *
+   * <p>Each exclusion maps axis names to values, and removes every combination matching all of those values.</p>
+   *
+   * @return the exclusions property
+   * @since 2.2.0
+   */
+  @Input
+  @NotNull ListProperty<Map<String, String>> getExclusions();
+
+  /**
+   * Exclude every combination matching the provided axis values.
+   *
+   * @param axisValues a map of axis name to value
+   * @since 2.2.0
+   */
+  default void exclude(final @NotNull Map<String, String> axisValues) {
+    this.getExclusions().add(Map.copyOf(axisValues));
+  }
+}
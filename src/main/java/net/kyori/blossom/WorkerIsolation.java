@@ -0,0 +1,57 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom;
+
+/**
+ * How the worker performing template generation is isolated from the build.
+ *
+ * @since 2.2.0
+ */
+public enum WorkerIsolation {
+  /**
+   * Run directly in the Gradle daemon, without isolation.
+   *
+   * <p>Pebble and SnakeYAML Engine are loaded in a class loader that is cached for as long as the worker classpath
+   * stays the same, so loaded classes, JIT-compiled code and parsed templates are reused between builds. This is the
+   * fastest option for repeated builds in a long-lived daemon, at the cost of keeping that class loader in memory.</p>
+   *
+   * @since 2.2.0
+   */
+  NONE,
+  /**
+   * Run in an isolated class loader within the Gradle daemon.
+   *
+   * <p>A new class loader is created for every task execution, so parsed templates and data files are not reused
+   * between tasks or builds.</p>
+   *
+   * @since 2.2.0
+   */
+  CLASSLOADER,
+  /**
+   * Run in a separate worker process, with its own heap.
+   *
+   * <p>Gradle keeps worker processes alive and reuses them for any task with the same classpath and fork options,
+   * so Pebble stays warm across tasks and builds as long as those options match.</p>
+   *
+   * @since 2.2.0
+   */
+  PROCESS;
+}
@@ -25,23 +25,56 @@ import net.kyori.blossom.BlossomExtension;
 import net.kyori.blossom.ResourceTemplateSet;
 import net.kyori.blossom.SourceTemplateSet;
 import net.kyori.blossom.TemplateSet;
+import org.gradle.api.Action;
 import org.gradle.api.ExtensiblePolymorphicDomainObjectContainer;
 import org.gradle.api.PolymorphicDomainObjectContainer;
 import org.gradle.api.model.ObjectFactory;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * The per-source-set extension.
+ *
+ * <p>Every source set gets one of these, but most never have any templates, so the template set container is only
+ * created (and wired up by the plugin) the first time it is accessed.</p>
+ */
 public class BlossomExtensionImpl implements BlossomExtension {
-  private final ExtensiblePolymorphicDomainObjectContainer<TemplateSet> templateSets;
+  private final ObjectFactory objects;
+  private @Nullable ExtensiblePolymorphicDomainObjectContainer<TemplateSet> templateSets;
+  private @Nullable Action<? super PolymorphicDomainObjectContainer<TemplateSet>> containerCreatedAction;
 
   @Inject
   public BlossomExtensionImpl(final ObjectFactory objects) {
-    this.templateSets = objects.polymorphicDomainObjectContainer(TemplateSet.class);
-    this.templateSets.registerBinding(ResourceTemplateSet.class, ResourceTemplateSetImpl.class);
-    this.templateSets.registerBinding(SourceTemplateSet.class, SourceTemplateSetImpl.class);
+    this.objects = objects;
+  }
+
+  /**
+   * Perform an action once the template set container has been created.
+   *
+   * <p>If the container already exists, the action is performed immediately.</p>
+   *
+   * @param action the action to perform
+   */
+  public void whenTemplateSetsCreated(final Action<? super PolymorphicDomainObjectContainer<TemplateSet>> action) {
+    if (this.templateSets != null) {
+      action.execute(this.templateSets);
+    } else {
+      this.containerCreatedAction = action;
+    }
   }
 
   @Override
   public @NotNull PolymorphicDomainObjectContainer<TemplateSet> getTemplateSets() {
+    if (this.templateSets == null) {
+      final ExtensiblePolymorphicDomainObjectContainer<TemplateSet> templateSets = this.objects.polymorphicDomainObjectContainer(TemplateSet.class);
+      templateSets.registerBinding(ResourceTemplateSet.class, ResourceTemplateSetImpl.class);
+      templateSets.registerBinding(SourceTemplateSet.class, SourceTemplateSetImpl.class);
+      this.templateSets = templateSets;
+      if (this.containerCreatedAction != null) {
+        this.containerCreatedAction.execute(templateSets);
+        this.containerCreatedAction = null;
+      }
+    }
     return this.templateSets;
   }
 }
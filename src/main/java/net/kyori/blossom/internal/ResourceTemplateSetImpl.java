@@ -43,6 +43,6 @@ public abstract class ResourceTemplateSetImpl extends TemplateSetImpl implements
 
   @Override
   public void registerOutputWithSet(final SourceSet destination, final TaskProvider<GenerateTemplates> generateTask) {
-    destination.getResources().srcDir(generateTask.map(GenerateTemplates::getOutputDir));
+    destination.getResources().srcDir(this.generatedSourceDirectory(generateTask));
   }
 }
@@ -55,7 +55,7 @@ public abstract class SourceTemplateSetImpl extends TemplateSetImpl implements S
     if (this.pendingDestination == null || this.pendingGenerateTask == null) {
       throw new GradleException("Tried to set a language before this template set has been claimed by the Blossom coordinator (or tried to set a second language!)!");
     }
-    lens.apply(this.pendingDestination).srcDir(this.pendingGenerateTask.map(GenerateTemplates::getOutputDir));
+    lens.apply(this.pendingDestination).srcDir(this.generatedSourceDirectory(this.pendingGenerateTask));
 
     // then clear!
     this.pendingDestination = null;
@@ -20,14 +20,22 @@
  */
 package net.kyori.blossom.internal;
 
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
 import javax.inject.Inject;
+import net.kyori.blossom.BudgetEnforcement;
+import net.kyori.blossom.GenerateTemplates;
+import net.kyori.blossom.GenerationBudget;
 import net.kyori.blossom.Variant;
+import net.kyori.blossom.VariantMatrix;
 import org.gradle.api.NamedDomainObjectContainer;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.SourceDirectorySet;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.TaskProvider;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -40,7 +48,12 @@ public abstract class TemplateSetImpl implements TemplateSetInternal {
   private final ConfigurableFileCollection dataFiles;
   private final MapProperty<String, Object> properties;
   private final NamedDomainObjectContainer<Variant> variants;
+  private final VariantMatrix variantMatrix;
   private final Property<String> header;
+  private final Property<Boolean> writeIfChanged;
+  private final Property<Integer> parallelism;
+  private final Property<Boolean> flightRecorderEvents;
+  private final GenerationBudget budget;
   private transient final SourceDirectorySet includes;
   private transient final SourceDirectorySet templates;
   private final String name;
@@ -51,7 +64,13 @@ public abstract class TemplateSetImpl implements TemplateSetInternal {
     this.dataFiles = this.getObjects().fileCollection();
     this.properties = this.getObjects().mapProperty(String.class, Object.class);
     this.variants = this.getObjects().domainObjectContainer(Variant.class, n -> this.getObjects().newInstance(VariantImpl.class, n));
+    this.variantMatrix = this.getObjects().newInstance(VariantMatrixImpl.class);
     this.header = this.getObjects().property(String.class);
+    this.writeIfChanged = this.getObjects().property(Boolean.class).convention(false);
+    this.parallelism = this.getObjects().property(Integer.class).convention(1);
+    this.flightRecorderEvents = this.getObjects().property(Boolean.class).convention(false);
+    this.budget = this.getObjects().newInstance(GenerationBudget.class);
+    this.budget.getEnforcement().convention(BudgetEnforcement.FAIL);
     this.includes = this.getObjects().sourceDirectorySet(name + "-template-includes", name + " template includes");
     this.templates = this.getObjects().sourceDirectorySet(name + "-templates", name + " templates");
   }
@@ -81,6 +100,26 @@ public abstract class TemplateSetImpl implements TemplateSetInternal {
     return this.header;
   }
 
+  @Override
+  public @NotNull Property<Boolean> getWriteIfChanged() {
+    return this.writeIfChanged;
+  }
+
+  @Override
+  public @NotNull Property<Integer> getParallelism() {
+    return this.parallelism;
+  }
+
+  @Override
+  public @NotNull Property<Boolean> getFlightRecorderEvents() {
+    return this.flightRecorderEvents;
+  }
+
+  @Override
+  public @NotNull GenerationBudget getBudget() {
+    return this.budget;
+  }
+
   @Override
   public @NotNull SourceDirectorySet getIncludes() {
     return this.includes;
@@ -91,10 +130,35 @@ public abstract class TemplateSetImpl implements TemplateSetInternal {
     return this.templates;
   }
 
+  @Override
+  public boolean hasTemplates() {
+    // directories produced by another task won't exist yet, but will be by the time we run
+    return this.templates.getSrcDirs().stream().anyMatch(File::isDirectory)
+      || !this.templates.getBuildDependencies().getDependencies(null).isEmpty();
+  }
+
+  /**
+   * Create a source directory for the generated output of this set that only carries a dependency on the generate task
+   * if this set has any templates.
+   *
+   * <p>This keeps template sets that are registered but never populated out of the task graph.</p>
+   *
+   * @param generateTask the generate task
+   * @return a value that can be passed to {@link SourceDirectorySet#srcDir(Object)}
+   */
+  protected Object generatedSourceDirectory(final TaskProvider<GenerateTemplates> generateTask) {
+    return (Callable<?>) () -> this.hasTemplates() ? generateTask.map(GenerateTemplates::getOutputDir) : List.of();
+  }
+
   // variant
 
   @Override
   public @NotNull NamedDomainObjectContainer<Variant> getVariants() {
     return this.variants;
   }
+
+  @Override
+  public @NotNull VariantMatrix getVariantMatrix() {
+    return this.variantMatrix;
+  }
 }
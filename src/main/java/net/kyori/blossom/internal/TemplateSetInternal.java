@@ -34,4 +34,7 @@ public interface TemplateSetInternal extends TemplateSet {
   Directory resolveOutputRoot(final Directory generatedDir);
 
   void registerOutputWithSet(final SourceSet destination, final TaskProvider<GenerateTemplates> generateTask);
+
+  // whether there is anything for this set to generate from, evaluated only once the task graph is being built
+  boolean hasTemplates();
 }
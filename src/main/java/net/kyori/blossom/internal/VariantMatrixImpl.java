@@ -0,0 +1,52 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal;
+
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import net.kyori.blossom.VariantMatrix;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.jetbrains.annotations.NotNull;
+
+public class VariantMatrixImpl implements VariantMatrix {
+  private final MapProperty<String, List<String>> axes;
+  private final ListProperty<Map<String, String>> exclusions;
+
+  @Inject
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public VariantMatrixImpl(final ObjectFactory objects) {
+    this.axes = objects.mapProperty(String.class, (Class<List<String>>) (Class) List.class);
+    this.exclusions = objects.listProperty((Class<Map<String, String>>) (Class) Map.class);
+  }
+
+  @Override
+  public @NotNull MapProperty<String, List<String>> getAxes() {
+    return this.axes;
+  }
+
+  @Override
+  public @NotNull ListProperty<Map<String, String>> getExclusions() {
+    return this.exclusions;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.IOException;
+import javax.inject.Inject;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Generate several template sets in a single worker invocation.
+ *
+ * <p>Every set is rendered by the same worker implementation, so class loading, the data file cache, and any engine
+ * for the same template directories are shared between them.</p>
+ */
+public abstract class GenerateBatchWorker implements WorkAction<GenerateBatchWorker.Params> {
+  public interface Params extends WorkParameters {
+    ListProperty<GenerationRequest> getRequests();
+
+    // only set when running without isolation, to load Pebble from
+    ConfigurableFileCollection getWorkerClasspath();
+  }
+
+  @Inject
+  public GenerateBatchWorker() {
+  }
+
+  @Override
+  public void execute() {
+    final @Nullable WorkerClassLoader loader = GenerateWorker.acquireLoader(this.getParameters().getWorkerClasspath());
+    try {
+      final GenerateWorkerInvoker invoker = GenerateWorker.createInvoker(loader);
+      for (final GenerationRequest request : this.getParameters().getRequests().get()) {
+        try {
+          request.generate(invoker);
+        } catch (final IOException ex) {
+          throw new GradleException("Failed to process templates of set " + request.setName() + ":" + ex.getMessage(), ex);
+        }
+      }
+    } finally {
+      if (loader != null) {
+        loader.release();
+      }
+    }
+  }
+}
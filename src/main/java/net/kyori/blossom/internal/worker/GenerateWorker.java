@@ -25,20 +25,27 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.workers.WorkAction;
 import org.gradle.workers.WorkParameters;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class GenerateWorker implements WorkAction<GenerateWorker.Params> {
+  private static final String INVOKER_IMPL = "net.kyori.blossom.internal.worker.GenerateWorkerInvokerImpl";
+
   public interface Params extends WorkParameters {
     // parameters + data files
     Property<String> getSetName();
@@ -51,13 +58,50 @@ public abstract class GenerateWorker implements WorkAction<GenerateWorker.Params
 
     MapProperty<String, FileCollection> getVariantFiles();
 
+    MapProperty<String, List<String>> getVariantMatrixAxes();
+
+    ListProperty<Map<String, String>> getVariantMatrixExclusions();
+
     Property<String> getHeader();
 
+    Property<Boolean> getWriteIfChanged();
+
+    Property<Integer> getParallelism();
+
+    Property<Integer> getShardIndex();
+
+    Property<Integer> getShardCount();
+
+    Property<String> getRunId();
+
+    DirectoryProperty getRenderCacheDirectory();
+
+    DirectoryProperty getMetricsReportDirectory();
+
+    Property<Integer> getSlowestTemplatesToLog();
+
+    Property<Boolean> getFlightRecorderEvents();
+
+    RegularFileProperty getBudgetMeasurementsFile();
+
     ConfigurableFileCollection getSourceDirectories();
 
     ConfigurableFileCollection getIncludesDirectories();
 
     DirectoryProperty getDestinationDirectory();
+
+    // incremental state
+    Property<Boolean> getIncremental();
+
+    RegularFileProperty getPreviousManifest();
+
+    RegularFileProperty getManifestOutput();
+
+    // only plan outputs, without rendering anything
+    RegularFileProperty getPlanOutput();
+
+    // only set when running without isolation, to load Pebble from
+    ConfigurableFileCollection getWorkerClasspath();
   }
 
   @Inject
@@ -66,39 +110,107 @@ public abstract class GenerateWorker implements WorkAction<GenerateWorker.Params
 
   @Override
   public void execute() {
-    final GenerateWorkerInvoker invoker;
+    final @Nullable WorkerClassLoader loader = acquireLoader(this.getParameters().getWorkerClasspath());
     try {
-      invoker = (GenerateWorkerInvoker) Class.forName("net.kyori.blossom.internal.worker.GenerateWorkerInvokerImpl").getConstructor().newInstance();
-    } catch (final InstantiationException
-                   | IllegalAccessException
-                   | InvocationTargetException
-                   | NoSuchMethodException
-                   | ClassNotFoundException ex) {
-      throw new GradleException("Failed to access Blossom worker stub: " + ex.getMessage(), ex);
+      this.execute(createInvoker(loader));
+    } finally {
+      if (loader != null) {
+        loader.release();
+      }
     }
+  }
 
+  private void execute(final GenerateWorkerInvoker invoker) {
     final Params params = this.getParameters();
+
     final var globalParams = new TemplateParams(
       params.getSetName().get(),
       toPaths(params.getGlobalParameterFiles()),
       params.getGlobalParameters().getOrElse(Map.of())
     );
     final Set<TemplateParams> variantParams = this.toVariantParameters(params.getVariantFiles().get(), params.getVariantParameters().get());
+    final VariantMatrixSpec variantMatrix;
+    try {
+      variantMatrix = new VariantMatrixSpec(params.getVariantMatrixAxes().get(), params.getVariantMatrixExclusions().get());
+    } catch (final IllegalArgumentException ex) {
+      throw new InvalidUserDataException("Invalid variant matrix for template set " + globalParams.name() + ": " + ex.getMessage(), ex);
+    }
 
     try {
+      if (params.getPlanOutput().isPresent()) {
+        invoker.plan(
+          globalParams,
+          variantParams,
+          variantMatrix,
+          toPaths(params.getIncludesDirectories()),
+          toPaths(params.getSourceDirectories()),
+          params.getHeader().getOrNull(),
+          params.getRunId().getOrNull(),
+          params.getPlanOutput().get().getAsFile().toPath()
+        );
+        return;
+      }
+
       invoker.generate(
         globalParams,
         variantParams,
+        variantMatrix,
         toPaths(params.getIncludesDirectories()),
         toPaths(params.getSourceDirectories()),
         params.getDestinationDirectory().get().getAsFile().toPath(),
-        params.getHeader().getOrNull()
+        params.getHeader().getOrNull(),
+        params.getIncremental().get(),
+        params.getPreviousManifest().get().getAsFile().toPath(),
+        params.getManifestOutput().get().getAsFile().toPath(),
+        new GenerationOptions()
+          .writeIfChanged(params.getWriteIfChanged().get())
+          .parallelism(params.getParallelism().get())
+          .shard(params.getShardIndex().get(), params.getShardCount().get())
+          .runId(params.getRunId().getOrNull())
+          .renderCacheDirectory(params.getRenderCacheDirectory().isPresent() ? params.getRenderCacheDirectory().get().getAsFile().toPath() : null)
+          .metrics(
+            params.getMetricsReportDirectory().isPresent() ? params.getMetricsReportDirectory().get().getAsFile().toPath() : null,
+            params.getSlowestTemplatesToLog().getOrElse(0)
+          )
+          .flightRecorderEvents(params.getFlightRecorderEvents().getOrElse(false))
+          .budgetMeasurementsFile(params.getBudgetMeasurementsFile().isPresent() ? params.getBudgetMeasurementsFile().get().getAsFile().toPath() : null)
       );
     } catch (final IOException ex) {
       throw new GradleException("Failed to process templates:" + ex.getMessage(), ex);
     }
   }
 
+  /**
+   * Get a class loader to load Pebble from, if we are running without isolation.
+   *
+   * <p>A returned loader must be released once the work item has finished with it.</p>
+   *
+   * @param workerClasspath the worker classpath, or an empty collection if Pebble is already on the classpath
+   * @return the loader, or {@code null} to use the plugin class loader
+   */
+  static @Nullable WorkerClassLoader acquireLoader(final FileCollection workerClasspath) {
+    return workerClasspath.isEmpty() ? null : WorkerClassLoader.acquire(workerClasspath.getFiles());
+  }
+
+  /**
+   * Create the worker implementation.
+   *
+   * @param loader the loader from {@link #acquireLoader(FileCollection)}
+   * @return the invoker
+   */
+  static GenerateWorkerInvoker createInvoker(final @Nullable ClassLoader loader) {
+    try {
+      final ClassLoader implLoader = loader == null ? GenerateWorker.class.getClassLoader() : loader;
+      return (GenerateWorkerInvoker) Class.forName(INVOKER_IMPL, true, implLoader).getConstructor().newInstance();
+    } catch (final InstantiationException
+                   | IllegalAccessException
+                   | InvocationTargetException
+                   | NoSuchMethodException
+                   | ClassNotFoundException ex) {
+      throw new GradleException("Failed to access Blossom worker stub: " + ex.getMessage(), ex);
+    }
+  }
+
   private Set<TemplateParams> toVariantParameters(final Map<String, ? extends FileCollection> variantFiles, final Map<String, Map<String, Object>> variantProperties) {
     final Set<TemplateParams> ret = new HashSet<>(variantFiles.size());
     for (final String variantName : variantFiles.keySet()) {
@@ -0,0 +1,155 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.kyori.blossom.TemplateSet;
+import net.kyori.blossom.Variant;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.file.FileCollection;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Everything needed to generate a single template set, resolved ahead of time so that several sets can be passed to one worker.
+ */
+public final class GenerationRequest implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final String setName;
+  private final List<String> globalFiles;
+  private final Map<String, Object> globalData;
+  private final Map<String, List<String>> variantFiles = new LinkedHashMap<>();
+  private final Map<String, Map<String, Object>> variantData = new LinkedHashMap<>();
+  private final Map<String, List<String>> matrixAxes = new LinkedHashMap<>();
+  private final List<Map<String, String>> matrixExclusions = new ArrayList<>();
+  private final List<String> includeDirectories;
+  private final List<String> sourceDirectories;
+  private final String outputDirectory;
+  private final @Nullable String header;
+  private final String previousManifest;
+  private final String manifestOutput;
+  private final boolean writeIfChanged;
+  private final int parallelism;
+  private final boolean flightRecorderEvents;
+  private final String runId;
+
+  public GenerationRequest(
+    final TemplateSet set,
+    final FileCollection sourceDirectories,
+    final FileCollection includeDirectories,
+    final Path outputDirectory,
+    final @Nullable String header,
+    final Path previousManifest,
+    final Path manifestOutput,
+    final String runId
+  ) {
+    this.setName = set.getName();
+    this.globalFiles = toStrings(set.getPropertyFiles());
+    this.globalData = new LinkedHashMap<>(set.getProperties().getOrElse(Map.of()));
+    for (final Variant variant : set.getVariants()) {
+      this.variantFiles.put(variant.getName(), toStrings(variant.getPropertyFiles()));
+      this.variantData.put(variant.getName(), new LinkedHashMap<>(variant.getProperties().getOrElse(Map.of())));
+    }
+    // copy everything into plain collections, which are known to be serializable
+    for (final Map.Entry<String, List<String>> axis : set.getVariantMatrix().getAxes().getOrElse(Map.of()).entrySet()) {
+      this.matrixAxes.put(axis.getKey(), new ArrayList<>(axis.getValue()));
+    }
+    for (final Map<String, String> exclusion : set.getVariantMatrix().getExclusions().getOrElse(List.of())) {
+      this.matrixExclusions.add(new LinkedHashMap<>(exclusion));
+    }
+    this.includeDirectories = toStrings(includeDirectories);
+    this.sourceDirectories = toStrings(sourceDirectories);
+    this.outputDirectory = outputDirectory.toString();
+    this.header = header;
+    this.previousManifest = previousManifest.toString();
+    this.manifestOutput = manifestOutput.toString();
+    this.writeIfChanged = set.getWriteIfChanged().get();
+    this.parallelism = set.getParallelism().get();
+    this.flightRecorderEvents = set.getFlightRecorderEvents().get();
+    this.runId = runId;
+  }
+
+  /**
+   * Generate the template set described by this request.
+   *
+   * @param invoker the worker implementation
+   * @throws IOException if unable to read inputs or write outputs
+   */
+  void generate(final GenerateWorkerInvoker invoker) throws IOException {
+    final Set<TemplateParams> variantParams = new HashSet<>(this.variantFiles.size());
+    for (final Map.Entry<String, List<String>> variant : this.variantFiles.entrySet()) {
+      variantParams.add(new TemplateParams(variant.getKey(), toPaths(variant.getValue()), this.variantData.get(variant.getKey())));
+    }
+    final VariantMatrixSpec variantMatrix;
+    try {
+      variantMatrix = new VariantMatrixSpec(this.matrixAxes, this.matrixExclusions);
+    } catch (final IllegalArgumentException ex) {
+      throw new InvalidUserDataException("Invalid variant matrix for template set " + this.setName + ": " + ex.getMessage(), ex);
+    }
+
+    invoker.generate(
+      new TemplateParams(this.setName, toPaths(this.globalFiles), this.globalData),
+      variantParams,
+      variantMatrix,
+      toPaths(this.includeDirectories),
+      toPaths(this.sourceDirectories),
+      Path.of(this.outputDirectory),
+      this.header,
+      false, // batches always regenerate in full
+      Path.of(this.previousManifest),
+      Path.of(this.manifestOutput),
+      new GenerationOptions()
+        .writeIfChanged(this.writeIfChanged)
+        .parallelism(this.parallelism)
+        .flightRecorderEvents(this.flightRecorderEvents)
+        .runId(this.runId)
+    );
+  }
+
+  String setName() {
+    return this.setName;
+  }
+
+  private static List<String> toStrings(final FileCollection files) {
+    final List<String> ret = new ArrayList<>();
+    for (final File file : files.getFiles()) {
+      ret.add(file.getAbsolutePath());
+    }
+    return ret;
+  }
+
+  private static Set<Path> toPaths(final List<String> files) {
+    final Set<Path> ret = new HashSet<>(files.size());
+    for (final String file : files) {
+      ret.add(Path.of(file));
+    }
+    return ret;
+  }
+}
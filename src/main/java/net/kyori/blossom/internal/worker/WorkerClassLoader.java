@@ -0,0 +1,175 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A class loader for running the worker without Gradle's isolation, reused for as long as the worker classpath does not change.
+ *
+ * <p>Pebble and SnakeYAML Engine are loaded from the worker classpath, and the worker implementation is defined again
+ * in this loader so it links against them. Only the types passed between the plugin and the worker are shared with the
+ * plugin class loader.</p>
+ *
+ * <p>Because the loader outlives any single build, so do the classes it loads: parsed templates, JIT-compiled code,
+ * and any caches held by the worker stay warm between builds in the same daemon.</p>
+ *
+ * <p>Only a few loaders are kept, evicting the least recently used. Loaders are handed out with {@link #acquire(Set)}
+ * and must be given back with {@link #release()}, so that an evicted loader is only closed once no worker is using it.</p>
+ */
+final class WorkerClassLoader extends URLClassLoader {
+  private static final String WORKER_PACKAGE = WorkerClassLoader.class.getPackageName() + '.';
+  private static final Set<String> SHARED_TYPES = Set.of(
+    GenerateWorkerInvoker.class.getName(),
+    GenerationOptions.class.getName(),
+    TemplateParams.class.getName(),
+    VariantMatrixSpec.class.getName()
+  );
+  // let Pebble log through Gradle's own binding
+  private static final String SLF4J_PACKAGE = "org.slf4j.";
+  private static final int MAX_CACHED_LOADERS = 4;
+
+  // worker classpath (file, size and modification time of every entry) -> loader, guarded by itself
+  private static final Map<List<String>, WorkerClassLoader> LOADERS = new LinkedHashMap<>(MAX_CACHED_LOADERS + 1, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<List<String>, WorkerClassLoader> eldest) {
+      if (this.size() > MAX_CACHED_LOADERS) {
+        // classpaths changed several times over the life of this daemon, don't keep every old version alive
+        eldest.getValue().evict();
+        return true;
+      }
+      return false;
+    }
+  };
+
+  static {
+    ClassLoader.registerAsParallelCapable();
+  }
+
+  // both guarded by LOADERS
+  private int users;
+  private boolean evicted;
+
+  private WorkerClassLoader(final URL[] urls, final ClassLoader parent) {
+    super(urls, parent);
+  }
+
+  /**
+   * Get a class loader for the provided worker classpath, reusing an existing one if the classpath is unchanged.
+   *
+   * <p>The loader must be released once the caller is done with it.</p>
+   *
+   * @param classpath the worker classpath
+   * @return a class loader
+   */
+  static WorkerClassLoader acquire(final Set<File> classpath) {
+    final List<String> key = new ArrayList<>(classpath.size());
+    final List<URL> urls = new ArrayList<>(classpath.size());
+    for (final File file : classpath) {
+      key.add(file.getAbsolutePath() + '@' + file.length() + '@' + file.lastModified());
+      try {
+        urls.add(file.toURI().toURL());
+      } catch (final MalformedURLException ex) {
+        throw new IllegalArgumentException("Invalid worker classpath entry " + file, ex);
+      }
+    }
+    key.sort(null);
+
+    synchronized (LOADERS) {
+      final WorkerClassLoader loader = LOADERS.computeIfAbsent(key, $ -> new WorkerClassLoader(urls.toArray(new URL[0]), WorkerClassLoader.class.getClassLoader()));
+      loader.users++;
+      return loader;
+    }
+  }
+
+  /**
+   * Give back a loader obtained from {@link #acquire(Set)}, closing it if it has since been evicted and nothing else uses it.
+   */
+  void release() {
+    synchronized (LOADERS) {
+      if (--this.users == 0 && this.evicted) {
+        this.closeQuietly();
+      }
+    }
+  }
+
+  private void evict() {
+    // called with LOADERS held
+    this.evicted = true;
+    if (this.users == 0) {
+      this.closeQuietly();
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      this.close();
+    } catch (final IOException ignored) {
+      // nothing more we can do, the loader is unreachable either way
+    }
+  }
+
+  @Override
+  protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+    synchronized (this.getClassLoadingLock(name)) {
+      Class<?> loaded = this.findLoadedClass(name);
+      if (loaded == null) {
+        if (name.startsWith(WORKER_PACKAGE) && !SHARED_TYPES.contains(name)) {
+          loaded = this.defineFromParent(name);
+        } else if (!name.startsWith(SLF4J_PACKAGE) && this.findResource(name.replace('.', '/') + ".class") != null) {
+          // the worker classpath wins over anything else on the plugin classpath
+          loaded = this.findClass(name);
+        } else {
+          loaded = this.getParent().loadClass(name);
+        }
+      }
+      if (resolve) {
+        this.resolveClass(loaded);
+      }
+      return loaded;
+    }
+  }
+
+  private Class<?> defineFromParent(final String name) throws ClassNotFoundException {
+    final String resource = name.replace('.', '/') + ".class";
+    try (final InputStream is = this.getParent().getResourceAsStream(resource)) {
+      if (is == null) {
+        throw new ClassNotFoundException(name);
+      }
+      final byte[] bytes = is.readAllBytes();
+      return this.defineClass(name, bytes, 0, bytes.length, WorkerClassLoader.class.getProtectionDomain());
+    } catch (final IOException ex) {
+      throw new ClassNotFoundException(name, ex);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Build-level timings for a synthetic build of N projects, each with M template sets of K variants.
+ *
+ * <p>Tune with the {@code blossom.perf.projects}, {@code blossom.perf.templateSets}, {@code blossom.perf.variants},
+ * {@code blossom.perf.iterations} and {@code blossom.perf.coldIterations} Gradle properties.</p>
+ */
+class BuildScenarioBenchmark {
+  private static final int PROJECTS = Integer.getInteger("blossom.perf.projects", 50);
+  private static final int TEMPLATE_SETS = Integer.getInteger("blossom.perf.templateSets", 4);
+  private static final int VARIANTS = Integer.getInteger("blossom.perf.variants", 8);
+  private static final int WARMUP_ITERATIONS = Integer.getInteger("blossom.perf.warmups", 3);
+  private static final int ITERATIONS = Integer.getInteger("blossom.perf.iterations", 10);
+  private static final int COLD_ITERATIONS = Integer.getInteger("blossom.perf.coldIterations", 3);
+
+  @Test
+  void buildScenarios(final @TempDir Path projectDir, final @TempDir Path coldTestKitDirs) throws IOException {
+    final SyntheticBuild build = new SyntheticBuild(PROJECTS, 1, TEMPLATE_SETS, VARIANTS);
+    build.write(projectDir, true);
+    final PerfResults results = new PerfResults("buildScenarios")
+      .parameter("projects", build.projects())
+      .parameter("templateSets", build.templateSets())
+      .parameter("variants", build.variants());
+
+    // a new TestKit directory means a new daemon, and empty caches
+    results.measure("coldExecution", 0, COLD_ITERATIONS, iteration -> {
+      final File testKitDir = coldTestKitDirs.resolve("run" + iteration).toFile();
+      SyntheticBuild.runner(projectDir, "clean", "generateTemplates").withTestKitDir(testKitDir).build();
+    });
+
+    results.measure("configuration", WARMUP_ITERATIONS, ITERATIONS, iteration -> SyntheticBuild.runner(projectDir, "help").build());
+
+    results.measure("warmExecution", WARMUP_ITERATIONS, ITERATIONS, iteration -> SyntheticBuild.runner(projectDir, "clean", "generateTemplates").build());
+
+    results.measure("upToDate", WARMUP_ITERATIONS, ITERATIONS, iteration -> {
+      final BuildResult result = SyntheticBuild.runner(projectDir, "generateTemplates").build();
+      assertEquals(TaskOutcome.UP_TO_DATE, result.task(generateTask(0, 0)).getOutcome());
+    });
+
+    results.measure("configurationCacheReuse", 1, ITERATIONS, iteration -> {
+      final BuildResult result = SyntheticBuild.runner(projectDir, "generateTemplates", "--configuration-cache").build();
+      if (iteration >= 0) {
+        assertTrue(result.getOutput().contains("Reusing configuration cache"), "configuration cache was not reused");
+      }
+    });
+
+    final Path edited = build.templateFile(projectDir, 0, 0);
+    final String original = Files.readString(edited);
+    results.measure("incrementalEdit", WARMUP_ITERATIONS, ITERATIONS, iteration -> {
+      Files.writeString(edited, original + "edit=" + iteration + "\n");
+      final BuildResult result = SyntheticBuild.runner(projectDir, "generateTemplates").build();
+      assertEquals(TaskOutcome.SUCCESS, result.task(generateTask(0, 0)).getOutcome());
+    });
+
+    results.write();
+  }
+
+  private static String generateTask(final int project, final int set) {
+    final String setName = SyntheticBuild.templateSetName(set);
+    return ":" + SyntheticBuild.projectName(project) + ":generate" + Character.toUpperCase(setName.charAt(0)) + setName.substring(1) + "Templates";
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.perf;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.gradle.testkit.runner.BuildResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures how much Blossom adds to configuration time in a large build where few projects use templates.
+ *
+ * <p>Tune with the {@code blossom.perf.projects}, {@code blossom.perf.templatedEvery} and {@code blossom.perf.iterations}
+ * Gradle properties.</p>
+ */
+class ConfigurationTimeBenchmark {
+  private static final int PROJECTS = Integer.getInteger("blossom.perf.projects", 600);
+  private static final int TEMPLATED_EVERY = Integer.getInteger("blossom.perf.templatedEvery", 30);
+  private static final int WARMUP_ITERATIONS = Integer.getInteger("blossom.perf.warmups", 3);
+  private static final int ITERATIONS = Integer.getInteger("blossom.perf.iterations", 10);
+
+  @Test
+  void configurationTime(final @TempDir Path baselineDir, final @TempDir Path blossomDir) throws IOException {
+    final SyntheticBuild build = new SyntheticBuild(PROJECTS, TEMPLATED_EVERY, 2, 1);
+    build.write(baselineDir, false);
+    build.write(blossomDir, true);
+
+    final PerfResults results = new PerfResults("configurationTime")
+      .parameter("projects", PROJECTS)
+      .parameter("templatedEvery", TEMPLATED_EVERY);
+    // --no-configuration-cache so that every iteration actually configures the build
+    final long baseline = results.measure("withoutBlossom", WARMUP_ITERATIONS, ITERATIONS, iteration -> SyntheticBuild.runner(baselineDir, "help", "--no-configuration-cache").build());
+    final long blossom = results.measure("withBlossom", WARMUP_ITERATIONS, ITERATIONS, iteration -> SyntheticBuild.runner(blossomDir, "help", "--no-configuration-cache").build());
+    System.out.printf(
+      "Configuration of %d projects (1 in %d templated): baseline %d ms, with blossom %d ms (+%d ms)%n",
+      PROJECTS, TEMPLATED_EVERY, baseline, blossom, blossom - baseline
+    );
+    results.write();
+
+    // and make sure the untemplated projects really are free of tasks
+    final BuildResult dryRun = SyntheticBuild.runner(blossomDir, "processResources", "--dry-run").build();
+    for (int i = 0; i < build.projects(); i++) {
+      final String generateTask = ":" + SyntheticBuild.projectName(i) + ":generateSet0Templates";
+      if (build.isTemplated(i)) {
+        assertTrue(dryRun.getOutput().contains(generateTask), "templated project did not schedule " + generateTask);
+      } else {
+        assertFalse(dryRun.getOutput().contains(":" + SyntheticBuild.projectName(i) + ":generate"), "untemplated project scheduled a generate task");
+      }
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.perf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Timings collected by a performance suite, written as JSON so that runs of different plugin versions on the same machine
+ * can be compared.
+ *
+ * <p>Results are written to the directory in the {@code blossom.perf.resultsDirectory} system property, or to the working
+ * directory if unset.</p>
+ */
+final class PerfResults {
+  private final String suite;
+  private final Map<String, Object> parameters = new LinkedHashMap<>();
+  private final Map<String, long[]> scenarios = new LinkedHashMap<>();
+
+  PerfResults(final String suite) {
+    this.suite = suite;
+  }
+
+  PerfResults parameter(final String name, final Object value) {
+    this.parameters.put(name, value);
+    return this;
+  }
+
+  /**
+   * Time several runs of a scenario.
+   *
+   * @param name the scenario name
+   * @param warmups the number of untimed runs to perform first
+   * @param iterations the number of timed runs
+   * @param scenario the action to time
+   * @return the median time, in milliseconds
+   * @throws IOException if the scenario fails to prepare its files
+   */
+  long measure(final String name, final int warmups, final int iterations, final Scenario scenario) throws IOException {
+    for (int i = 0; i < warmups; i++) {
+      scenario.run(-1 - i);
+    }
+
+    final long[] times = new long[iterations];
+    for (int i = 0; i < iterations; i++) {
+      final long start = System.nanoTime();
+      scenario.run(i);
+      times[i] = (System.nanoTime() - start) / 1_000_000;
+    }
+    this.scenarios.put(name, times);
+    final long median = median(times);
+    System.out.printf("[%s] %s: median %d ms over %d runs%n", this.suite, name, median, iterations);
+    return median;
+  }
+
+  /**
+   * Write the results to {@code <suite>.json} in the results directory.
+   *
+   * @return the written file
+   * @throws IOException if unable to write
+   */
+  Path write() throws IOException {
+    final StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"suite\": ").append(string(this.suite)).append(",\n");
+    json.append("  \"timestamp\": ").append(string(Instant.now().toString())).append(",\n");
+    json.append("  \"environment\": {\n");
+    json.append("    \"blossomVersion\": ").append(string(System.getProperty("blossom.perf.pluginVersion", "unknown"))).append(",\n");
+    json.append("    \"gradleVersion\": ").append(string(System.getProperty("blossom.perf.gradleVersion", "unknown"))).append(",\n");
+    json.append("    \"javaVersion\": ").append(string(System.getProperty("java.version"))).append(",\n");
+    json.append("    \"os\": ").append(string(System.getProperty("os.name") + " " + System.getProperty("os.arch"))).append(",\n");
+    json.append("    \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append('\n');
+    json.append("  },\n");
+
+    json.append("  \"parameters\": {");
+    boolean first = true;
+    for (final Map.Entry<String, Object> parameter : this.parameters.entrySet()) {
+      json.append(first ? "\n" : ",\n").append("    ").append(string(parameter.getKey())).append(": ");
+      json.append(parameter.getValue() instanceof Number ? parameter.getValue().toString() : string(String.valueOf(parameter.getValue())));
+      first = false;
+    }
+    json.append(first ? "},\n" : "\n  },\n");
+
+    json.append("  \"scenarios\": {");
+    first = true;
+    for (final Map.Entry<String, long[]> scenario : this.scenarios.entrySet()) {
+      final long[] times = scenario.getValue();
+      final long[] sorted = times.clone();
+      Arrays.sort(sorted);
+      json.append(first ? "\n" : ",\n").append("    ").append(string(scenario.getKey())).append(": {\n");
+      json.append("      \"medianMs\": ").append(median(times)).append(",\n");
+      json.append("      \"minMs\": ").append(sorted[0]).append(",\n");
+      json.append("      \"maxMs\": ").append(sorted[sorted.length - 1]).append(",\n");
+      json.append("      \"samplesMs\": ").append(Arrays.toString(times)).append('\n');
+      json.append("    }");
+      first = false;
+    }
+    json.append(first ? "}\n" : "\n  }\n");
+    json.append("}\n");
+
+    final Path directory = Path.of(System.getProperty("blossom.perf.resultsDirectory", "."));
+    Files.createDirectories(directory);
+    final Path file = directory.resolve(this.suite + ".json");
+    Files.writeString(file, json);
+    System.out.println("[" + this.suite + "] results written to " + file.toAbsolutePath());
+    return file;
+  }
+
+  private static long median(final long[] times) {
+    final long[] sorted = times.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+
+  private static String string(final String value) {
+    final StringBuilder ret = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        ret.append('\\').append(c);
+      } else if (c < 0x20) {
+        ret.append(String.format("\\u%04x", (int) c));
+      } else {
+        ret.append(c);
+      }
+    }
+    return ret.append('"').toString();
+  }
+
+  /**
+   * A single run of a scenario.
+   */
+  @FunctionalInterface
+  interface Scenario {
+    /**
+     * Perform the run.
+     *
+     * @param iteration the iteration number, negative for warmups
+     * @throws IOException if the scenario needs to modify files and can't
+     */
+    void run(final int iteration) throws IOException;
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.gradle.testkit.runner.GradleRunner;
+
+/**
+ * A generated multi-project build, where only some projects actually use templates.
+ *
+ * <p>Every project applies Blossom, like a convention plugin would, so the cost of the plugin on projects that never
+ * use it is included in any measurement.</p>
+ *
+ * <p>Pebble and SnakeYAML Engine are provided as local files from the {@code blossom.perf.workerClasspath} system property
+ * when it is set, so that builds can run without network access.</p>
+ *
+ * <p>The worker isolation mode of every generation task can be chosen per build with the {@code blossom.isolation}
+ * Gradle property.</p>
+ */
+final class SyntheticBuild {
+  private static final String WORKER_CLASSPATH = System.getProperty("blossom.perf.workerClasspath", "");
+
+  private final int projects;
+  private final int templatedEvery;
+  private final int templateSets;
+  private final int variants;
+
+  /**
+   * Create a new build description.
+   *
+   * @param projects the number of subprojects
+   * @param templatedEvery one in this many projects will declare template sets
+   * @param templateSets the number of resource template sets in each templated project
+   * @param variants the number of variants in each template set
+   */
+  SyntheticBuild(final int projects, final int templatedEvery, final int templateSets, final int variants) {
+    this.projects = projects;
+    this.templatedEvery = templatedEvery;
+    this.templateSets = templateSets;
+    this.variants = variants;
+  }
+
+  int projects() {
+    return this.projects;
+  }
+
+  int templateSets() {
+    return this.templateSets;
+  }
+
+  int variants() {
+    return this.variants;
+  }
+
+  boolean isTemplated(final int project) {
+    return project % this.templatedEvery == 0;
+  }
+
+  static String projectName(final int project) {
+    return "project" + project;
+  }
+
+  static String templateSetName(final int set) {
+    return "set" + set;
+  }
+
+  /**
+   * Write the build into a directory.
+   *
+   * @param root the root project directory
+   * @param applyBlossom whether to apply Blossom at all, for a baseline measurement
+   * @throws IOException if unable to write
+   */
+  void write(final Path root, final boolean applyBlossom) throws IOException {
+    final StringBuilder settings = new StringBuilder();
+    settings.append("rootProject.name = 'synthetic'\n\n")
+      .append("dependencyResolutionManagement {\n")
+      .append("  repositoriesMode = RepositoriesMode.FAIL_ON_PROJECT_REPOS\n")
+      .append("  repositories {\n")
+      .append("    mavenCentral()\n")
+      .append("  }\n")
+      .append("}\n\n");
+    for (int i = 0; i < this.projects; i++) {
+      settings.append("include '").append(projectName(i)).append("'\n");
+    }
+    Files.writeString(root.resolve("settings.gradle"), settings);
+    Files.writeString(root.resolve("gradle.properties"), "org.gradle.parallel=true\n");
+
+    for (int i = 0; i < this.projects; i++) {
+      final Path project = Files.createDirectories(root.resolve(projectName(i)));
+      final StringBuilder build = new StringBuilder();
+      build.append("plugins {\n")
+        .append("  id 'java'\n");
+      if (applyBlossom) {
+        build.append("  id 'net.kyori.blossom'\n");
+      }
+      build.append("}\n");
+      if (applyBlossom && this.isTemplated(i)) {
+        this.writeTemplates(project, build);
+      }
+      Files.writeString(project.resolve("build.gradle"), build);
+    }
+  }
+
+  /**
+   * Create a runner for a build written by this class.
+   *
+   * @param root the root project directory
+   * @param arguments the build arguments
+   * @return a runner with the plugin under test on its classpath
+   */
+  static GradleRunner runner(final Path root, final String... arguments) {
+    return GradleRunner.create()
+      .withProjectDir(root.toFile())
+      .withPluginClasspath()
+      .withArguments(arguments);
+  }
+
+  Path templateFile(final Path root, final int project, final int set) {
+    return root.resolve(projectName(project) + "/src/main/" + templateSetName(set) + "-templates/" + this.templateFileName());
+  }
+
+  private String templateFileName() {
+    // each variant needs its own output
+    return this.variants > 1 ? "values-{{ variant }}.properties.peb" : "values.properties.peb";
+  }
+
+  private void writeTemplates(final Path project, final StringBuilder build) throws IOException {
+    if (!WORKER_CLASSPATH.isEmpty()) {
+      build.append("\ndependencies {\n");
+      for (final String file : WORKER_CLASSPATH.split(File.pathSeparator)) {
+        build.append("  blossomRuntime files('").append(file.replace("\\", "/")).append("')\n");
+      }
+      build.append("}\n");
+    }
+
+    build.append("\nsourceSets {\n")
+      .append("  main {\n")
+      .append("    blossom {\n");
+    for (int set = 0; set < this.templateSets; set++) {
+      final String name = templateSetName(set);
+      build.append("      customResources('").append(name).append("') {\n")
+        .append("        property('version', '1.0.0')\n");
+      if (this.variants > 1) {
+        build.append("        variants(");
+        for (int variant = 0; variant < this.variants; variant++) {
+          if (variant > 0) build.append(", ");
+          build.append("'v").append(variant).append('\'');
+        }
+        build.append(")\n");
+      }
+      build.append("      }\n");
+
+      final Path templates = Files.createDirectories(project.resolve("src/main/" + name + "-templates"));
+      Files.writeString(templates.resolve(this.templateFileName()), "version={{ version }}\nset=" + name + "\n");
+    }
+    build.append("    }\n")
+      .append("  }\n")
+      .append("}\n");
+
+    build.append("\ntasks.withType(net.kyori.blossom.GenerateTemplates).configureEach {\n")
+      .append("  workerIsolation = providers.gradleProperty('blossom.isolation').map { net.kyori.blossom.WorkerIsolation.valueOf(it) }\n")
+      .append("}\n");
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import net.kyori.blossom.WorkerIsolation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Execution timings of the same synthetic build with each worker isolation mode.
+ *
+ * <p>Cold runs use a fresh daemon each time, so show the cost of loading Pebble. Warm runs reuse one daemon, where
+ * {@link WorkerIsolation#NONE} and {@link WorkerIsolation#PROCESS} can keep Pebble loaded between builds, but
+ * {@link WorkerIsolation#CLASSLOADER} cannot.</p>
+ *
+ * <p>Tune with the {@code blossom.perf.projects}, {@code blossom.perf.templateSets}, {@code blossom.perf.variants},
+ * {@code blossom.perf.iterations} and {@code blossom.perf.coldIterations} Gradle properties.</p>
+ */
+class WorkerIsolationBenchmark {
+  private static final int PROJECTS = Integer.getInteger("blossom.perf.projects", 50);
+  private static final int TEMPLATE_SETS = Integer.getInteger("blossom.perf.templateSets", 4);
+  private static final int VARIANTS = Integer.getInteger("blossom.perf.variants", 8);
+  private static final int WARMUP_ITERATIONS = Integer.getInteger("blossom.perf.warmups", 3);
+  private static final int ITERATIONS = Integer.getInteger("blossom.perf.iterations", 10);
+  private static final int COLD_ITERATIONS = Integer.getInteger("blossom.perf.coldIterations", 3);
+
+  @Test
+  void workerIsolation(final @TempDir Path projectDir, final @TempDir Path testKitDirs) throws IOException {
+    final SyntheticBuild build = new SyntheticBuild(PROJECTS, 1, TEMPLATE_SETS, VARIANTS);
+    build.write(projectDir, true);
+    final PerfResults results = new PerfResults("workerIsolation")
+      .parameter("projects", build.projects())
+      .parameter("templateSets", build.templateSets())
+      .parameter("variants", build.variants());
+
+    for (final WorkerIsolation isolation : WorkerIsolation.values()) {
+      final String mode = "-Pblossom.isolation=" + isolation.name();
+      final String name = isolation.name().toLowerCase(Locale.ROOT);
+
+      results.measure(name + "ColdExecution", 0, COLD_ITERATIONS, iteration -> {
+        final File testKitDir = testKitDirs.resolve(name + iteration).toFile();
+        SyntheticBuild.runner(projectDir, "clean", "generateTemplates", mode).withTestKitDir(testKitDir).build();
+      });
+
+      final File warmTestKitDir = testKitDirs.resolve(name + "Warm").toFile();
+      results.measure(name + "WarmExecution", WARMUP_ITERATIONS, ITERATIONS, iteration -> {
+        SyntheticBuild.runner(projectDir, "clean", "generateTemplates", mode).withTestKitDir(warmTestKitDir).build();
+      });
+    }
+
+    results.write();
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import net.kyori.blossom.test.BlossomDisplayNameGeneration;
+import net.kyori.blossom.test.BlossomFunctionalTest;
+import net.kyori.mammoth.test.TestContext;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.DisplayNameGeneration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayNameGeneration(BlossomDisplayNameGeneration.class)
+class BuildCacheTest {
+  private static final String OUTPUT = "build/generated/resources/blossom/main/resource/greeting.properties";
+
+  @BlossomFunctionalTest
+  void testRelocatable(final TestContext ctx) throws IOException {
+    // the same project, checked out in two different locations, sharing one local build cache
+    for (final String checkout : new String[] {"first", "second"}) {
+      ctx.copyInput("build.gradle", checkout + "/build.gradle");
+      ctx.copyInput("template-data.yaml", checkout + "/template-data.yaml");
+      ctx.copyInput("greeting.properties.peb", checkout + "/src/main/resource-templates/greeting.properties.peb");
+      ctx.writeText(checkout + "/settings.gradle",
+        "rootProject.name = 'relocatableBuildCache'\n"
+          + "\n"
+          + "buildCache {\n"
+          + "  local {\n"
+          + "    directory = file('../build-cache')\n"
+          + "  }\n"
+          + "}\n");
+    }
+
+    final Path first = ctx.outputDirectory().resolve("first");
+    BuildResult result = ctx.runner("generateTemplates", "--build-cache").withProjectDir(first.toFile()).build();
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+
+    final Path second = ctx.outputDirectory().resolve("second");
+    result = ctx.runner("generateTemplates", "--build-cache").withProjectDir(second.toFile()).build();
+    assertEquals(TaskOutcome.FROM_CACHE, result.task(":generateResourceTemplates").getOutcome());
+    assertEquals("# generated\ngreeting=hello\n", Files.readString(second.resolve(OUTPUT)));
+  }
+}
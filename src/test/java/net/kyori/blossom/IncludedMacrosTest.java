@@ -23,6 +23,7 @@ package net.kyori.blossom;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.jar.JarEntry;
@@ -70,4 +71,26 @@ class IncludedMacrosTest {
       assertEquals(expected.toUpperCase(Locale.ROOT), props.getProperty("valueUpper"));
     }
   }
+
+  @BlossomFunctionalTest
+  void testIncludeDirectoryOrder(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "includeDirectoryOrder");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("test.properties.peb", "src/main/resource-templates/test.properties.peb");
+    // the earlier directory wins, even though the later one has a file matching the name exactly
+    ctx.copyInput("header.peb", "src/main/first-macros/header.peb");
+    ctx.copyInput("header", "src/main/second-macros/header");
+
+    BuildResult result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+
+    final Path output = ctx.outputDirectory().resolve("build/generated/resources/blossom/main/resource/test.properties");
+    assertEquals("header=first\n", Files.readString(output));
+
+    // and changes to it are picked up by incremental runs
+    ctx.writeText("src/main/first-macros/header.peb", "header=edited\n");
+    result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertEquals("header=edited\n", Files.readString(output));
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import net.kyori.blossom.test.BlossomDisplayNameGeneration;
+import net.kyori.blossom.test.BlossomFunctionalTest;
+import net.kyori.blossom.test.SettingsFactory;
+import net.kyori.mammoth.test.TestContext;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.DisplayNameGeneration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayNameGeneration(BlossomDisplayNameGeneration.class)
+class IncrementalGenerationTest {
+  private static final String OUTPUT_DIR = "build/generated/resources/blossom/main/resource/";
+
+  @BlossomFunctionalTest
+  void testIncrementalGeneration(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "incrementalGeneration");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("dependent.properties.peb", "src/main/resource-templates/dependent.properties.peb");
+    ctx.copyInput("standalone.properties.peb", "src/main/resource-templates/standalone.properties.peb");
+    ctx.copyInput("macros.peb", "src/main/resource-macros/macros.peb");
+
+    BuildResult result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+
+    final Path dependent = ctx.outputDirectory().resolve(OUTPUT_DIR + "dependent.properties");
+    final Path standalone = ctx.outputDirectory().resolve(OUTPUT_DIR + "standalone.properties");
+    assertTrue(Files.readString(dependent).contains("value=hello abc123"));
+    final long standaloneModified = Files.getLastModifiedTime(standalone).toMillis();
+
+    // changing an include only re-renders the templates that use it
+    ctx.writeText("src/main/resource-macros/macros.peb", "{% macro hello(value) %}goodbye {{ value }}{% endmacro %}\n");
+    result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(Files.readString(dependent).contains("value=goodbye abc123"));
+    assertEquals(standaloneModified, Files.getLastModifiedTime(standalone).toMillis());
+
+    // outputs that were removed by hand are generated again
+    Files.delete(standalone);
+    result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(Files.readString(standalone).contains("value=abc123"));
+
+    // removing a template removes exactly its outputs
+    Files.delete(ctx.outputDirectory().resolve("src/main/resource-templates/dependent.properties.peb"));
+    result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertFalse(Files.exists(dependent), "output of removed template was not deleted");
+    assertTrue(Files.exists(standalone), "output of unchanged template was deleted");
+  }
+
+  @BlossomFunctionalTest
+  void testRenderCache(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "renderCache");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("dependent.properties.peb", "src/main/resource-templates/dependent.properties.peb");
+    ctx.copyInput("standalone.properties.peb", "src/main/resource-templates/standalone.properties.peb");
+    ctx.copyInput("macros.peb", "src/main/resource-macros/macros.peb");
+
+    BuildResult result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    final Path cache = ctx.outputDirectory().resolve("render-cache");
+    assertTrue(Files.isDirectory(cache), "render cache was not populated");
+
+    // a clean build produces the same outputs from the cache
+    final Path dependent = ctx.outputDirectory().resolve(OUTPUT_DIR + "dependent.properties");
+    final Path standalone = ctx.outputDirectory().resolve(OUTPUT_DIR + "standalone.properties");
+    result = ctx.build("clean", "generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(Files.readString(dependent).contains("value=hello abc123"));
+    assertTrue(Files.readString(standalone).contains("value=abc123"));
+
+    // but changes to includes are still picked up
+    ctx.writeText("src/main/resource-macros/macros.peb", "{% macro hello(value) %}goodbye {{ value }}{% endmacro %}\n");
+    result = ctx.build("clean", "generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(Files.readString(dependent).contains("value=goodbye abc123"));
+  }
+
+  @BlossomFunctionalTest
+  void testStaleOutputCleanup(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "staleOutputCleanup");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("first.properties.peb", "src/main/resource-templates/first.properties.peb");
+    ctx.copyInput("second.properties.peb", "src/main/resource-templates/second.properties.peb");
+
+    BuildResult result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+
+    final Path first = ctx.outputDirectory().resolve(OUTPUT_DIR + "first.properties");
+    final Path second = ctx.outputDirectory().resolve(OUTPUT_DIR + "second.properties");
+    final Path unrelated = ctx.outputDirectory().resolve(OUTPUT_DIR + "unrelated.txt");
+    assertTrue(Files.exists(second));
+    Files.writeString(unrelated, "not generated by blossom");
+
+    // a property change forces a full run, which should still only remove outputs we produced last time
+    Files.delete(ctx.outputDirectory().resolve("src/main/resource-templates/second.properties.peb"));
+    result = ctx.build("generateTemplates", "-PtemplateValue=def456");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(Files.readString(first).contains("value=def456"));
+    assertFalse(Files.exists(second), "output of removed template was not deleted");
+    assertTrue(Files.exists(unrelated), "file not produced by blossom was deleted");
+
+    // and a repeated build leaves everything alone
+    result = ctx.build("generateTemplates", "-PtemplateValue=def456");
+    assertEquals(TaskOutcome.UP_TO_DATE, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(Files.exists(unrelated), "file not produced by blossom was deleted");
+  }
+}
@@ -23,6 +23,9 @@ package net.kyori.blossom;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
 import java.util.Properties;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -35,6 +38,7 @@ import org.gradle.testkit.runner.TaskOutcome;
 import org.junit.jupiter.api.DisplayNameGeneration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -65,4 +69,205 @@ class ResourceTemplateSetTest {
     }
   }
 
+  @BlossomFunctionalTest
+  void testEmptyTemplateSet(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "emptyTemplateSet");
+    ctx.copyInput("build.gradle");
+
+    // without a template directory, the generate task should not be part of the graph
+    BuildResult result = ctx.build("processResources", "generateTemplates", "--dry-run");
+    assertFalse(result.getOutput().contains(":generateResourceTemplates"), "generate task was scheduled for an empty template set");
+
+    ctx.copyInput("template.properties.peb", "src/main/resource-templates/template.properties.peb");
+    result = ctx.build("processResources");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+  }
+
+  @BlossomFunctionalTest
+  void testGenerationMetrics(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "generationMetrics");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("{{ variant }}.properties.peb", "src/main/resource-templates/{{ variant }}.properties.peb");
+
+    final BuildResult result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(result.getOutput().contains("Slowest templates:"), "no summary of slowest templates was logged");
+
+    final Path reports = ctx.outputDirectory().resolve("build/reports/blossom/main/resource");
+    final String json = Files.readString(reports.resolve("metrics.json"));
+    assertTrue(json.contains("\"output\": \"first.properties\""), "report did not include every output");
+    assertTrue(json.contains("\"output\": \"second.properties\""), "report did not include every output");
+    assertTrue(Files.isRegularFile(reports.resolve("metrics.html")), "no html report was written");
+  }
+
+  @BlossomFunctionalTest
+  void testGenerationBudget(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "generationBudget");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("small.properties.peb", "src/main/resource-templates/small.properties.peb");
+    ctx.copyInput("large.properties.peb", "src/main/resource-templates/large.properties.peb");
+
+    BuildResult result = ctx.runner("generateTemplates").buildAndFail();
+    assertTrue(result.getOutput().contains("exceeded its generation budget"), "budget violation was not reported");
+    assertTrue(result.getOutput().contains("large.properties"), "offending output was not listed");
+    assertFalse(result.getOutput().contains("small.properties"), "output within budget was listed");
+
+    result = ctx.build("generateTemplates", "-Penforcement=WARN");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(result.getOutput().contains("exceeded its generation budget"), "budget violation was not reported");
+  }
+
+  @BlossomFunctionalTest
+  void testJsonDataFiles(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "jsonDataFiles");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("data.json");
+    ctx.copyInput("two.jsonl");
+    ctx.copyInput("{{ variant }}.properties.peb", "src/main/resource-templates/{{ variant }}.properties.peb");
+
+    // the malformed value in data.json is never read, so it is never parsed
+    final BuildResult result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+
+    final Path outputDir = ctx.outputDirectory().resolve("build/generated/resources/blossom/main/resource");
+    final String one = Files.readString(outputDir.resolve("one.properties"));
+    assertTrue(one.contains("label=first"), "variant data from the global JSON file was not used");
+    assertTrue(one.contains("grass_block=3"), "array data from the global JSON file was not used");
+    assertTrue(Files.readString(outputDir.resolve("two.properties")).contains("label=second"), "variant data from the JSON Lines file was not used");
+  }
+
+  @BlossomFunctionalTest
+  void testWorkerIsolation(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "workerIsolation");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("isolation.properties.peb", "src/main/resource-templates/isolation.properties.peb");
+
+    final Path output = ctx.outputDirectory().resolve("build/generated/resources/blossom/main/resource/isolation.properties");
+    // NONE twice, to run with a class loader reused from the first build
+    for (final WorkerIsolation isolation : new WorkerIsolation[] {WorkerIsolation.NONE, WorkerIsolation.NONE, WorkerIsolation.CLASSLOADER, WorkerIsolation.PROCESS}) {
+      final BuildResult result = ctx.build("generateTemplates", "--rerun-tasks", "-Pisolation=" + isolation.name());
+      assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+      assertEquals("isolation=" + isolation.name() + "\n", Files.readString(output));
+    }
+  }
+
+  @BlossomFunctionalTest
+  void testBatchGeneration(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "batchGeneration");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("gradle.properties");
+    ctx.copyInput("data.yaml");
+    ctx.copyInput("main.properties.peb", "src/main/resource-templates/main.properties.peb");
+    ctx.copyInput("extra.properties.peb", "src/main/extra-templates/extra.properties.peb");
+
+    BuildResult result = ctx.build("processResources");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateTemplateBatch").getOutcome());
+    assertEquals(TaskOutcome.SKIPPED, result.task(":generateResourceTemplates").getOutcome());
+    assertEquals(TaskOutcome.SKIPPED, result.task(":generateExtraTemplates").getOutcome());
+    assertTrue(result.getOutput().contains("Batch generation does not support the following settings, which will be ignored: shardCount of generateExtraTemplates"), "ignored shard count was not reported");
+
+    final Path generated = ctx.outputDirectory().resolve("build/generated/resources/blossom/main");
+    assertEquals("greeting=hello\n", Files.readString(generated.resolve("resource/main.properties")));
+    assertEquals("greeting=hello\nset=extra\n", Files.readString(generated.resolve("extra/extra.properties")));
+    assertTrue(Files.isRegularFile(ctx.outputDirectory().resolve("build/resources/main/extra.properties")), "batch output was not processed as a resource");
+
+    // removing a template removes its output from only that set
+    Files.delete(ctx.outputDirectory().resolve("src/main/extra-templates/extra.properties.peb"));
+    result = ctx.build("processResources");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateTemplateBatch").getOutcome());
+    assertFalse(Files.exists(generated.resolve("extra/extra.properties")));
+    assertTrue(Files.exists(generated.resolve("resource/main.properties")));
+  }
+
+  @BlossomFunctionalTest
+  void testWriteIfChanged(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "writeIfChanged");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("changing.properties.peb", "src/main/resource-templates/changing.properties.peb");
+    ctx.copyInput("constant.properties.peb", "src/main/resource-templates/constant.properties.peb");
+
+    BuildResult result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+
+    final Path outputDir = ctx.outputDirectory().resolve("build/generated/resources/blossom/main/resource");
+    final FileTime constantModified = Files.getLastModifiedTime(outputDir.resolve("constant.properties"));
+
+    result = ctx.build("generateTemplates", "-Pchanging=second");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertEquals("value=second\n", Files.readString(outputDir.resolve("changing.properties")));
+    assertEquals(constantModified, Files.getLastModifiedTime(outputDir.resolve("constant.properties")));
+
+    // without a record of the last run, the files on disk are still compared
+    Files.delete(ctx.outputDirectory().resolve("build/generated/blossom-manifests/main/resource.txt"));
+    result = ctx.build("generateTemplates", "-Pchanging=third");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertEquals("value=third\n", Files.readString(outputDir.resolve("changing.properties")));
+    assertEquals(constantModified, Files.getLastModifiedTime(outputDir.resolve("constant.properties")));
+  }
+
+  @BlossomFunctionalTest
+  void testParallelRendering(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "parallelRendering");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("{{ variant }}.properties.peb", "src/main/resource-templates/{{ variant }}.properties.peb");
+
+    BuildResult result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    // variables set by one render are never seen by another
+    final Path outputDir = ctx.outputDirectory().resolve("build/generated/resources/blossom/main/resource");
+    for (final String variant : List.of("a", "b", "c", "d", "e", "f", "g", "h")) {
+      assertEquals("before=original\nafter=" + variant + "\n", Files.readString(outputDir.resolve(variant + ".properties")));
+    }
+
+    result = ctx.runner("generateTemplates", "-Pparallelism=0").buildAndFail();
+    assertTrue(result.getOutput().contains("Parallelism of template set resource must be at least 1, but was 0"), "invalid parallelism was not reported");
+  }
+
+  @BlossomFunctionalTest
+  void testOutputCollisions(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "outputCollisions");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("first.properties.peb", "src/main/resource-templates/first.properties.peb");
+    ctx.copyInput("second.properties.peb", "src/main/resource-templates/second.properties.peb");
+
+    // every collision is reported at once, before anything is rendered
+    final BuildResult result = ctx.runner("generateTemplates").buildAndFail();
+    assertEquals(TaskOutcome.FAILED, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(result.getOutput().contains("Output file first.properties (template first.properties.peb in variant second)"), "missing first collision");
+    assertTrue(result.getOutput().contains("Output file second.properties (template second.properties.peb in variant second)"), "missing second collision");
+    assertFalse(Files.exists(ctx.outputDirectory().resolve("build/generated/resources/blossom/main/resource/first.properties")), "output was rendered");
+  }
+
+  @BlossomFunctionalTest
+  void testShardedGeneration(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "shardedGeneration");
+    ctx.copyInput("build.gradle");
+    // alpha and beta are rendered by the first shard, gamma and the clashing template by the second
+    ctx.copyInput("alpha.properties.peb", "src/main/resource-templates/alpha.properties.peb");
+    ctx.copyInput("beta.properties.peb", "src/main/resource-templates/beta.properties.peb");
+    ctx.copyInput("gamma.properties.peb", "src/main/resource-templates/gamma.properties.peb");
+
+    BuildResult result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+
+    final Path outputDir = ctx.outputDirectory().resolve("build/generated/resources/blossom/main/resource");
+    assertEquals("name=alpha\nvalue=abc123\n", Files.readString(outputDir.resolve("alpha.properties")));
+    assertEquals("name=beta\nvalue=abc123\n", Files.readString(outputDir.resolve("beta.properties")));
+    assertEquals("name=gamma\nvalue=abc123\n", Files.readString(outputDir.resolve("gamma.properties")));
+
+    // outputs of removed templates are deleted, whichever shard rendered them
+    Files.delete(ctx.outputDirectory().resolve("src/main/resource-templates/beta.properties.peb"));
+    result = ctx.build("generateTemplates");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateResourceTemplates").getOutcome());
+    assertFalse(Files.exists(outputDir.resolve("beta.properties")), "output of removed template was not deleted");
+    assertTrue(Files.exists(outputDir.resolve("alpha.properties")));
+    assertTrue(Files.exists(outputDir.resolve("gamma.properties")));
+
+    // collisions between templates in different shards are only found once the shards are merged
+    ctx.copyInput("{{ clash }}.properties.peb", "src/main/resource-templates/{{ clash }}.properties.peb");
+    result = ctx.runner("generateTemplates", "-PtemplateValue=def456").buildAndFail();
+    assertEquals(TaskOutcome.FAILED, result.task(":generateResourceTemplates").getOutcome());
+    assertTrue(result.getOutput().contains("Multiple templates produced the same output"), "collision was not reported");
+    assertTrue(result.getOutput().contains("Output file alpha.properties"), "colliding output was not listed");
+  }
 }
@@ -21,6 +21,8 @@
 package net.kyori.blossom;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import net.kyori.blossom.test.BlossomDisplayNameGeneration;
 import net.kyori.blossom.test.BlossomFunctionalTest;
 import net.kyori.blossom.test.SettingsFactory;
@@ -30,6 +32,8 @@ import org.gradle.testkit.runner.TaskOutcome;
 import org.junit.jupiter.api.DisplayNameGeneration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DisplayNameGeneration(BlossomDisplayNameGeneration.class)
 class SourceTemplateTest {
@@ -60,4 +64,53 @@ class SourceTemplateTest {
     assertEquals(TaskOutcome.SUCCESS, result.task(":generateJavaTemplates").getOutcome());
 
   }
+
+  @BlossomFunctionalTest
+  void testSourceVariantMatrix(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "sourceVariantMatrix");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("Main.java", "src/main/java/test/Main.java");
+    ctx.copyInput("{{ wrapper }}{{ type }}Box.java.peb", "src/main/java-templates/test/{{ wrapper }}{{ type }}Box.java.peb");
+
+    // the java class Main.java reads fields from every generated combination
+    final BuildResult result = ctx.build("build");
+
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateJavaTemplates").getOutcome());
+    final Path outputDir = ctx.outputDirectory().resolve("build/generated/sources/blossom/main/java/test");
+    assertTrue(Files.readString(outputDir.resolve("MutableIntBox.java")).contains("VARIANT = \"Int-Mutable\""));
+    assertFalse(Files.exists(outputDir.resolve("ImmutableLongBox.java")), "excluded combination was generated");
+  }
+
+  @BlossomFunctionalTest
+  void testPlanTemplates(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "planTemplates");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("{{ wrapper }}{{ type }}Box.java.peb", "src/main/java-templates/test/{{ wrapper }}{{ type }}Box.java.peb");
+
+    final BuildResult result = ctx.build("planJavaTemplates");
+
+    assertEquals(TaskOutcome.SUCCESS, result.task(":planJavaTemplates").getOutcome());
+    final String plan = Files.readString(ctx.outputDirectory().resolve("build/blossom-plans/main/java.json"));
+    assertTrue(plan.contains("\"output\": \"test/MutableIntBox.java\""), "missing planned output");
+    assertTrue(plan.contains("\"variant\": \"Int-Mutable\""), "missing variant name");
+    assertFalse(plan.contains("ImmutableLongBox"), "excluded combination was planned");
+    assertFalse(Files.exists(ctx.outputDirectory().resolve("build/generated/sources/blossom/main/java")), "templates were rendered");
+  }
+
+  @BlossomFunctionalTest
+  void testCodegenFilters(final TestContext ctx) throws IOException {
+    SettingsFactory.writeSettings(ctx, "codegenFilters");
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("Main.java", "src/main/java/test/Main.java");
+    ctx.copyInput("{{ 'registry keys' | pascalCase }}.java.peb", "src/main/java-templates/test/{{ 'registry keys' | pascalCase }}.java.peb");
+
+    // the java class Main.java reads fields named by the filters
+    final BuildResult result = ctx.build("build");
+
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateJavaTemplates").getOutcome());
+    final String generated = Files.readString(ctx.outputDirectory().resolve("build/generated/sources/blossom/main/java/test/RegistryKeys.java"));
+    assertTrue(generated.contains("MAX_VALUE = \"max-value\";"), "case conversion or literal formatting failed");
+    assertTrue(generated.contains("class__ID = 0x02;"), "reserved word was not mangled, or hex formatting failed");
+    assertTrue(generated.contains("QUOTED = \"say \\\"hi\\\"\";"), "string was not escaped");
+  }
 }
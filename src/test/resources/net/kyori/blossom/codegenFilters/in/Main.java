@@ -0,0 +1,7 @@
+package test;
+
+public class Main {
+  public static void main(final String[] args) {
+    System.out.println(RegistryKeys.HTTP_SERVER + " has id " + RegistryKeys.httpServer_ID);
+  }
+}
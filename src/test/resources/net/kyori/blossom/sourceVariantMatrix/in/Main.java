@@ -0,0 +1,7 @@
+package test;
+
+public class Main {
+  public static void main(final String[] args) {
+    System.out.println(MutableIntBox.VALUE + ImmutableIntBox.VALUE + MutableLongBox.VALUE);
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.Filter;
+import io.pebbletemplates.pebble.template.EvaluationContext;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The filters Blossom provides to every template, for transforms that come up often when generating code.
+ *
+ * <p>These would otherwise have to be written as macros, which are far slower to evaluate.</p>
+ */
+final class CodegenExtension extends AbstractExtension {
+  private static final String DIGITS_ARGUMENT = "digits";
+
+  private final Map<String, Filter> filters;
+
+  CodegenExtension() {
+    final Map<String, Filter> filters = new HashMap<>();
+    filters.put("camelCase", new Transform(in -> CodegenTransforms.convertCase(in, CodegenTransforms.Case.CAMEL)));
+    filters.put("pascalCase", new Transform(in -> CodegenTransforms.convertCase(in, CodegenTransforms.Case.PASCAL)));
+    filters.put("snakeCase", new Transform(in -> CodegenTransforms.convertCase(in, CodegenTransforms.Case.SNAKE)));
+    filters.put("constantCase", new Transform(in -> CodegenTransforms.convertCase(in, CodegenTransforms.Case.CONSTANT)));
+    filters.put("kebabCase", new Transform(in -> CodegenTransforms.convertCase(in, CodegenTransforms.Case.KEBAB)));
+    filters.put("escapeJava", new Transform(in -> CodegenTransforms.escape(in, CodegenTransforms.Language.JAVA)));
+    filters.put("escapeKotlin", new Transform(in -> CodegenTransforms.escape(in, CodegenTransforms.Language.KOTLIN)));
+    filters.put("escapeJson", new Transform(in -> CodegenTransforms.escape(in, CodegenTransforms.Language.JSON)));
+    filters.put("javaIdentifier", new Transform(in -> CodegenTransforms.identifier(in, CodegenTransforms.Language.JAVA)));
+    filters.put("kotlinIdentifier", new Transform(in -> CodegenTransforms.identifier(in, CodegenTransforms.Language.KOTLIN)));
+    filters.put("hex", new HexFilter());
+    filters.put("javaLiteral", new JavaLiteralFilter());
+    this.filters = Map.copyOf(filters);
+  }
+
+  @Override
+  public Map<String, Filter> getFilters() {
+    return this.filters;
+  }
+
+  private static PebbleException failure(final IllegalArgumentException ex, final PebbleTemplate self, final int lineNumber) {
+    return new PebbleException(ex, ex.getMessage(), lineNumber, self.getName());
+  }
+
+  /**
+   * A filter applying a transform to the string form of its input.
+   */
+  private static final class Transform implements Filter {
+    private final Function<CharSequence, String> transform;
+
+    Transform(final Function<CharSequence, String> transform) {
+      this.transform = transform;
+    }
+
+    @Override
+    public List<String> getArgumentNames() {
+      return null;
+    }
+
+    @Override
+    public Object apply(final Object input, final Map<String, Object> args, final PebbleTemplate self, final EvaluationContext context, final int lineNumber) {
+      if (input == null) {
+        return null;
+      }
+      return this.transform.apply(input instanceof CharSequence ? (CharSequence) input : input.toString());
+    }
+  }
+
+  private static final class HexFilter implements Filter {
+    private static final List<String> ARGUMENTS = List.of(DIGITS_ARGUMENT);
+
+    @Override
+    public List<String> getArgumentNames() {
+      return ARGUMENTS;
+    }
+
+    @Override
+    public Object apply(final Object input, final Map<String, Object> args, final PebbleTemplate self, final EvaluationContext context, final int lineNumber) {
+      if (input == null) {
+        return null;
+      }
+      final Object digits = args.get(DIGITS_ARGUMENT);
+      try {
+        if (!(input instanceof Number)) {
+          throw new IllegalArgumentException("The hex filter only accepts numbers, but got a " + input.getClass().getSimpleName());
+        }
+        if (digits != null && !(digits instanceof Number)) {
+          throw new IllegalArgumentException("The digits argument of the hex filter must be a number");
+        }
+        return CodegenTransforms.hex((Number) input, digits == null ? 0 : ((Number) digits).intValue());
+      } catch (final IllegalArgumentException ex) {
+        throw failure(ex, self, lineNumber);
+      }
+    }
+  }
+
+  private static final class JavaLiteralFilter implements Filter {
+    @Override
+    public List<String> getArgumentNames() {
+      return null;
+    }
+
+    @Override
+    public Object apply(final Object input, final Map<String, Object> args, final PebbleTemplate self, final EvaluationContext context, final int lineNumber) {
+      try {
+        return CodegenTransforms.javaLiteral(input);
+      } catch (final IllegalArgumentException ex) {
+        throw failure(ex, self, lineNumber);
+      }
+    }
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * String transforms commonly needed when generating code.
+ *
+ * <p>Each transform makes a single pass over its input, writing into one builder sized up front, and returns the
+ * input itself when there is nothing to change.</p>
+ */
+final class CodegenTransforms {
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+  private static final Set<String> JAVA_RESERVED = Set.of(
+    "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue", "default",
+    "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if", "implements", "import",
+    "instanceof", "int", "interface", "long", "native", "new", "package", "private", "protected", "public", "return",
+    "short", "static", "strictfp", "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try",
+    "void", "volatile", "while", "true", "false", "null", "_"
+  );
+  private static final Set<String> KOTLIN_HARD_KEYWORDS = Set.of(
+    "as", "break", "class", "continue", "do", "else", "false", "for", "fun", "if", "in", "interface", "is", "null",
+    "object", "package", "return", "super", "this", "throw", "true", "try", "typealias", "typeof", "val", "var", "when",
+    "while"
+  );
+
+  enum Case {
+    CAMEL('\0', false, true),
+    PASCAL('\0', false, true),
+    SNAKE('_', false, false),
+    CONSTANT('_', true, false),
+    KEBAB('-', false, false);
+
+    final char separator;
+    final boolean upper;
+    final boolean capitalizeWords;
+
+    Case(final char separator, final boolean upper, final boolean capitalizeWords) {
+      this.separator = separator;
+      this.upper = upper;
+      this.capitalizeWords = capitalizeWords;
+    }
+  }
+
+  enum Language {
+    JAVA,
+    KOTLIN,
+    JSON
+  }
+
+  private CodegenTransforms() {
+  }
+
+  /**
+   * Convert text to another case.
+   *
+   * <p>Words are split at any character that is not a letter or digit, at a change from lower to upper case, and
+   * before the last capital of an acronym ({@code HTTPServer} is {@code HTTP} and {@code Server}).</p>
+   *
+   * @param input the input text
+   * @param style the case to convert to
+   * @return the converted text
+   */
+  static String convertCase(final CharSequence input, final Case style) {
+    final int length = input.length();
+    final StringBuilder out = new StringBuilder(length + 8);
+    int word = 0;
+    boolean inWord = false;
+    for (int i = 0; i < length; i++) {
+      final char c = input.charAt(i);
+      if (!Character.isLetterOrDigit(c)) {
+        inWord = false;
+        continue;
+      }
+
+      if (inWord) {
+        final char previous = input.charAt(i - 1);
+        if (Character.isUpperCase(c) && (Character.isLowerCase(previous)
+          || Character.isUpperCase(previous) && i + 1 < length && Character.isLowerCase(input.charAt(i + 1)))) {
+          inWord = false; // camel hump, or the end of an acronym
+        }
+      }
+
+      if (inWord) {
+        out.append(style.upper ? Character.toUpperCase(c) : Character.toLowerCase(c));
+      } else {
+        if (word > 0 && style.separator != '\0') {
+          out.append(style.separator);
+        }
+        final boolean capitalize = style.upper || style.capitalizeWords && (word > 0 || style == Case.PASCAL);
+        out.append(capitalize ? Character.toUpperCase(c) : Character.toLowerCase(c));
+        word++;
+        inWord = true;
+      }
+    }
+    return out.toString();
+  }
+
+  /**
+   * Escape text for use inside a string literal, without surrounding quotes.
+   *
+   * @param input the input text
+   * @param language the language of the literal
+   * @return the escaped text
+   */
+  static String escape(final CharSequence input, final Language language) {
+    final int length = input.length();
+    int first = 0;
+    while (first < length && !needsEscape(input.charAt(first), language)) {
+      first++;
+    }
+    if (first == length) {
+      return input.toString();
+    }
+
+    final StringBuilder out = new StringBuilder(length + 16);
+    out.append(input, 0, first);
+    for (int i = first; i < length; i++) {
+      final char c = input.charAt(i);
+      switch (c) {
+        case '"': out.append("\\\""); break;
+        case '\\': out.append("\\\\"); break;
+        case '\n': out.append("\\n"); break;
+        case '\r': out.append("\\r"); break;
+        case '\t': out.append("\\t"); break;
+        case '\b': out.append("\\b"); break;
+        case '$':
+          if (language == Language.KOTLIN) {
+            out.append("\\$");
+          } else {
+            out.append(c);
+          }
+          break;
+        case '\f':
+          if (language == Language.KOTLIN) { // no \f escape in Kotlin
+            unicodeEscape(out, c);
+          } else {
+            out.append("\\f");
+          }
+          break;
+        default:
+          if (c < 0x20 || c == 0x7f || c == '\u2028' || c == '\u2029') {
+            unicodeEscape(out, c);
+          } else {
+            out.append(c);
+          }
+      }
+    }
+    return out.toString();
+  }
+
+  private static boolean needsEscape(final char c, final Language language) {
+    return c < 0x20 || c == '"' || c == '\\' || c == 0x7f || c == '\u2028' || c == '\u2029'
+      || c == '$' && language == Language.KOTLIN;
+  }
+
+  private static void unicodeEscape(final StringBuilder out, final char c) {
+    out.append("\\u")
+      .append(HEX_DIGITS[(c >> 12) & 0xf])
+      .append(HEX_DIGITS[(c >> 8) & 0xf])
+      .append(HEX_DIGITS[(c >> 4) & 0xf])
+      .append(HEX_DIGITS[c & 0xf]);
+  }
+
+  /**
+   * Turn arbitrary text into a valid identifier.
+   *
+   * <p>Characters that cannot appear in an identifier are replaced with {@code _}, and identifiers that would start
+   * with a digit are prefixed with {@code _}. Reserved words have {@code _} appended in Java, and are quoted with
+   * backticks in Kotlin.</p>
+   *
+   * @param input the input text
+   * @param language the target language, either Java or Kotlin
+   * @return a valid identifier
+   */
+  static String identifier(final CharSequence input, final Language language) {
+    final int length = input.length();
+    if (length == 0) {
+      return "_";
+    }
+
+    String ret = null;
+    if (Character.isJavaIdentifierStart(input.charAt(0))) {
+      int i = 1;
+      while (i < length && Character.isJavaIdentifierPart(input.charAt(i))) {
+        i++;
+      }
+      if (i == length) {
+        ret = input.toString(); // already valid
+      }
+    }
+    if (ret == null) {
+      final StringBuilder out = new StringBuilder(length + 1);
+      if (!Character.isJavaIdentifierStart(input.charAt(0))) {
+        out.append('_');
+      }
+      for (int i = 0; i < length; i++) {
+        final char c = input.charAt(i);
+        out.append(Character.isJavaIdentifierPart(c) ? c : '_');
+      }
+      ret = out.toString();
+    }
+
+    if (language == Language.KOTLIN) {
+      return KOTLIN_HARD_KEYWORDS.contains(ret) ? '`' + ret + '`' : ret;
+    }
+    return JAVA_RESERVED.contains(ret) ? ret + '_' : ret;
+  }
+
+  /**
+   * Format an integer as a hexadecimal literal, like {@code 0x0F}.
+   *
+   * <p>Negative values of fixed-width types are formatted as their two's complement.</p>
+   *
+   * @param value the value
+   * @param digits the minimum number of digits, padded with zeroes
+   * @return the literal
+   */
+  static String hex(final Number value, final int digits) {
+    final long bits;
+    final int width; // in nibbles
+    if (value instanceof Byte) {
+      bits = value.byteValue() & 0xffL;
+      width = 2;
+    } else if (value instanceof Short) {
+      bits = value.shortValue() & 0xffffL;
+      width = 4;
+    } else if (value instanceof Integer) {
+      bits = value.intValue() & 0xffffffffL;
+      width = 8;
+    } else if (value instanceof Long) {
+      bits = value.longValue();
+      width = 16;
+    } else if (value instanceof BigInteger) {
+      final BigInteger big = (BigInteger) value;
+      final String magnitude = big.abs().toString(16).toUpperCase(Locale.ROOT);
+      final StringBuilder out = new StringBuilder(magnitude.length() + digits + 3);
+      if (big.signum() < 0) out.append('-');
+      out.append("0x");
+      for (int i = magnitude.length(); i < digits; i++) out.append('0');
+      return out.append(magnitude).toString();
+    } else {
+      throw new IllegalArgumentException("Cannot format a " + value.getClass().getSimpleName() + " as hex, only integer types are supported");
+    }
+
+    int significant = width;
+    while (significant > 1 && (bits >>> ((significant - 1) * 4) & 0xf) == 0) {
+      significant--;
+    }
+    final int count = Math.max(significant, digits);
+    final StringBuilder out = new StringBuilder(count + 2).append("0x");
+    for (int i = count - 1; i >= 0; i--) {
+      out.append(i >= width ? '0' : HEX_DIGITS[(int) (bits >>> (i * 4)) & 0xf]);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Format a value as a Java literal of its own type.
+   *
+   * @param value the value, which may be {@code null}
+   * @return the literal
+   */
+  static String javaLiteral(final Object value) {
+    if (value == null) {
+      return "null";
+    } else if (value instanceof CharSequence) {
+      final String escaped = escape((CharSequence) value, Language.JAVA);
+      return new StringBuilder(escaped.length() + 2).append('"').append(escaped).append('"').toString();
+    } else if (value instanceof Character) {
+      final char c = (Character) value;
+      return c == '\'' ? "'\\''" : '\'' + escape(value.toString(), Language.JAVA) + '\'';
+    } else if (value instanceof Boolean || value instanceof Integer) {
+      return value.toString();
+    } else if (value instanceof Long) {
+      return value + "L";
+    } else if (value instanceof Short) {
+      return "(short) " + value;
+    } else if (value instanceof Byte) {
+      return "(byte) " + value;
+    } else if (value instanceof Float) {
+      final float f = (Float) value;
+      if (Float.isNaN(f)) return "Float.NaN";
+      if (Float.isInfinite(f)) return f > 0 ? "Float.POSITIVE_INFINITY" : "Float.NEGATIVE_INFINITY";
+      return value + "F";
+    } else if (value instanceof Double) {
+      final double d = (Double) value;
+      if (Double.isNaN(d)) return "Double.NaN";
+      if (Double.isInfinite(d)) return d > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+      return value + "D";
+    }
+    throw new IllegalArgumentException("Cannot format a " + value.getClass().getSimpleName() + " as a Java literal");
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashing of file contents, used to identify templates and outputs.
+ */
+final class ContentHash {
+  private static final String ALGORITHM = "SHA-256";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private ContentHash() {
+  }
+
+  static MessageDigest digest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (final NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ALGORITHM + " is required to be supported by every JVM", ex);
+    }
+  }
+
+  static String of(final byte[] contents) {
+    return toHex(digest().digest(contents));
+  }
+
+  static String of(final ByteBuffer contents) {
+    final MessageDigest digest = digest();
+    digest.update(contents);
+    return toHex(digest.digest());
+  }
+
+  static String toHex(final byte[] hash) {
+    final char[] out = new char[hash.length * 2];
+    for (int i = 0; i < hash.length; i++) {
+      out[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+      out[i * 2 + 1] = HEX[hash[i] & 0xf];
+    }
+    return new String(out);
+  }
+}
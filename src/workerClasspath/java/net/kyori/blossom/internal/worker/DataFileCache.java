@@ -0,0 +1,239 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.stream.IntStream;
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.jetbrains.annotations.Nullable;
+import org.snakeyaml.engine.v2.api.Load;
+import org.snakeyaml.engine.v2.api.LoadSettings;
+import org.snakeyaml.engine.v2.exceptions.YamlEngineException;
+
+/**
+ * A cache of parsed data files, shared by every task using the same worker class loader.
+ *
+ * <p>Like {@link EngineCache}, this only outlives a task execution with the {@code NONE} and {@code PROCESS} isolation
+ * modes.</p>
+ *
+ * <p>Files are keyed by their path and a hash of their contents, so a file is only parsed again once it has changed. Parsed
+ * data is deeply immutable, so it can be safely shared between tasks and threads. All files share a single size budget,
+ * evicting the least recently used files once it's exceeded.</p>
+ */
+final class DataFileCache {
+  // an approximation: parsed data is weighed by the size of its source
+  private static final long MAX_WEIGHT = 64L * 1024 * 1024;
+  private static final Map<Key, FutureTask<Object>> CACHE = new LinkedHashMap<>(64, 0.75f, true);
+  private static long weight;
+
+  private DataFileCache() {
+  }
+
+  /**
+   * Load several data files at once, parsing any that are not yet cached in parallel.
+   *
+   * @param files the files to load
+   * @return the immutable parsed data of each file
+   */
+  static Map<Path, Object> preload(final Collection<Path> files) {
+    final List<Path> toLoad = List.copyOf(files);
+    final Object[] loaded = new Object[toLoad.size()];
+    if (toLoad.size() <= 1) {
+      for (int i = 0; i < loaded.length; i++) {
+        loaded[i] = get(toLoad.get(i));
+      }
+    } else {
+      IntStream.range(0, loaded.length).parallel().forEach(i -> loaded[i] = get(toLoad.get(i)));
+    }
+
+    // parsed data may be null, so we can't use Collectors.toMap
+    final Map<Path, Object> ret = new HashMap<>(toLoad.size());
+    for (int i = 0; i < loaded.length; i++) {
+      ret.put(toLoad.get(i), loaded[i]);
+    }
+    return ret;
+  }
+
+  /**
+   * Get the parsed contents of a data file.
+   *
+   * @param file the file to read
+   * @return the immutable parsed data
+   */
+  static @Nullable Object get(final Path file) {
+    final byte[] contents;
+    try {
+      contents = Files.readAllBytes(file);
+    } catch (final IOException ex) {
+      throw new GradleException("Failed to load data from " + file, ex);
+    }
+
+    final Key key = new Key(file, ContentHash.of(contents), contents.length);
+    final FutureTask<Object> task;
+    final boolean owner;
+    synchronized (CACHE) {
+      final @Nullable FutureTask<Object> existing = CACHE.get(key);
+      if (existing != null) {
+        task = existing;
+        owner = false;
+      } else {
+        task = new FutureTask<>(() -> parse(file, contents));
+        CACHE.put(key, task);
+        owner = true;
+
+        weight += key.weight();
+        final Iterator<Key> it = CACHE.keySet().iterator();
+        while (weight > MAX_WEIGHT && it.hasNext()) {
+          final Key eldest = it.next();
+          if (eldest.equals(key)) continue;
+          weight -= eldest.weight();
+          it.remove();
+        }
+      }
+    }
+
+    // parse outside the lock, so independent files can be parsed in parallel
+    if (owner) {
+      final WorkerEvents.@Nullable DataFileLoad event = WorkerEvents.enabled() ? new WorkerEvents.DataFileLoad() : null;
+      if (event != null) {
+        event.begin();
+      }
+      task.run();
+      if (event != null) {
+        event.file = file.toString();
+        event.size = contents.length;
+        event.commit();
+      }
+    }
+    try {
+      return task.get();
+    } catch (final ExecutionException ex) {
+      synchronized (CACHE) {
+        if (CACHE.remove(key, task)) {
+          weight -= key.weight();
+        }
+      }
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw new GradleException("Failed to load data from " + file, ex.getCause());
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Interrupted while loading data from " + file, ex);
+    }
+  }
+
+  /**
+   * Parse the contents of a data file, choosing a format based on its extension.
+   *
+   * <p>Files ending in {@code .json} are read as JSON, files ending in {@code .jsonl} or {@code .ndjson} as JSON Lines,
+   * and everything else as YAML. JSON mappings are indexed rather than parsed, see {@link LazyDataMap}.</p>
+   *
+   * @param file the file, used to pick a format and for error messages
+   * @param contents the contents of the file
+   * @return the immutable parsed data
+   * @throws IOException if unable to read the contents
+   */
+  static @Nullable Object parse(final Path file, final byte[] contents) throws IOException {
+    final String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    if (name.endsWith(".json")) {
+      return LazyDataMap.read(contents, file.toString());
+    } else if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+      return LazyDataMap.readLines(contents, file.toString());
+    }
+
+    final LoadSettings settings = LoadSettings.builder()
+      .setLabel(file.toString())
+      .build();
+    try (final Reader reader = new InputStreamReader(new ByteArrayInputStream(contents), StandardCharsets.UTF_8)) {
+      return freeze(new Load(settings).loadFromReader(reader));
+    } catch (final YamlEngineException ex) {
+      throw new InvalidUserDataException("Invalid input in " + file, ex);
+    }
+  }
+
+  private static @Nullable Object freeze(final @Nullable Object value) {
+    if (value instanceof Map<?, ?>) {
+      final Map<Object, Object> ret = new LinkedHashMap<>();
+      for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        ret.put(entry.getKey(), freeze(entry.getValue()));
+      }
+      return Collections.unmodifiableMap(ret);
+    } else if (value instanceof List<?>) {
+      final List<Object> ret = new ArrayList<>(((List<?>) value).size());
+      for (final Object element : (List<?>) value) {
+        ret.add(freeze(element));
+      }
+      return Collections.unmodifiableList(ret);
+    } else {
+      // scalars produced by the YAML parser are immutable already
+      return value;
+    }
+  }
+
+  static final class Key {
+    final Path file;
+    final String hash;
+    final int size;
+
+    Key(final Path file, final String hash, final int size) {
+      this.file = file;
+      this.hash = hash;
+      this.size = size;
+    }
+
+    long weight() {
+      return Math.max(this.size, 1);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) return true;
+      if (!(other instanceof Key)) return false;
+      final Key that = (Key) other;
+      return this.file.equals(that.file) && this.hash.equals(that.hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.file, this.hash);
+    }
+  }
+}
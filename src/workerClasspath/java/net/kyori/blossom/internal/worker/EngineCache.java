@@ -0,0 +1,233 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.cache.PebbleCache;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps Pebble engines and their parsed templates around for as long as the worker class loader lives.
+ *
+ * <p>How long that is depends on the {@link net.kyori.blossom.WorkerIsolation} mode: with {@code NONE} the loader is kept
+ * for as long as the worker classpath is unchanged, and with {@code PROCESS} for as long as Gradle keeps the worker process
+ * alive. With {@code CLASSLOADER}, Gradle creates a new class loader for every task execution, so the cache only helps
+ * within a single work item, such as between the template sets of a batch.</p>
+ *
+ * <p>Engines are keyed by the template directories they load from. Parsed templates are keyed by the content hash of their
+ * source file (see {@link MultiDirectoryLoader.TemplateKey}), so edited templates are simply re-parsed, and the old versions
+ * eventually fall out of the cache. All parsed templates share a single size budget, evicting the least recently used
+ * templates once it's exceeded.</p>
+ */
+final class EngineCache {
+  private static final int MAX_ENGINES = 16;
+  // an approximation: parsed templates are weighed by the size of their source
+  private static final long MAX_TEMPLATE_WEIGHT = 64L * 1024 * 1024;
+
+  private static final Map<List<Path>, CachedEngine> ENGINES = new LinkedHashMap<>(MAX_ENGINES, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<List<Path>, CachedEngine> eldest) {
+      if (this.size() > MAX_ENGINES) {
+        eldest.getValue().templates.invalidateAll();
+        return true;
+      }
+      return false;
+    }
+  };
+  private static final Map<TemplateCache.Key, PebbleTemplate> TEMPLATES = new LinkedHashMap<>(256, 0.75f, true);
+  private static long templateWeight;
+
+  private static volatile @Nullable PebbleEngine nameEngine;
+
+  private EngineCache() {
+  }
+
+  /**
+   * Get the engine used to evaluate templated file names.
+   *
+   * <p>File names are kept separate from template contents so the two can never be confused in the template cache.</p>
+   *
+   * @return the file name engine
+   */
+  static PebbleEngine nameEngine() {
+    @Nullable PebbleEngine engine = nameEngine;
+    if (engine == null) {
+      synchronized (EngineCache.class) {
+        engine = nameEngine;
+        if (engine == null) {
+          nameEngine = engine = new PebbleEngine.Builder()
+            .autoEscaping(false) // no html escaping
+            .defaultLocale(Locale.ROOT)
+            .loader(new StringLoader())
+            .strictVariables(true) // make sure to fail when vars are not present
+            .templateCache(new TemplateCache())
+            .extension(TemplateExtensions.all())
+            .build();
+        }
+      }
+    }
+    return engine;
+  }
+
+  /**
+   * Get an engine that loads templates from the provided directories, creating one if necessary.
+   *
+   * <p>The loader of an existing engine is invalidated the first time it is requested by a new run, so that shards of the
+   * same run, which may execute concurrently, share one index of the template directories.</p>
+   *
+   * @param directories the template directories, in priority order
+   * @param runId the id of the current run, or {@code null} to always invalidate the loader
+   * @param factory a function to create a new engine builder for a loader
+   * @return the cached engine
+   */
+  static CachedEngine engine(final List<Path> directories, final @Nullable String runId, final Function<MultiDirectoryLoader, PebbleEngine.Builder> factory) {
+    synchronized (ENGINES) {
+      final CachedEngine existing = ENGINES.get(directories);
+      if (existing != null) {
+        if (runId == null || !runId.equals(existing.runId)) {
+          existing.loader.invalidate();
+          existing.runId = runId;
+        }
+        return existing;
+      }
+
+      final MultiDirectoryLoader loader = new MultiDirectoryLoader(directories, MultiDirectoryLoader.CHARSET);
+      final TemplateCache templates = new TemplateCache();
+      final CachedEngine created = new CachedEngine(factory.apply(loader).templateCache(templates).build(), loader, templates);
+      created.runId = runId;
+      ENGINES.put(List.copyOf(directories), created);
+      return created;
+    }
+  }
+
+  static final class CachedEngine {
+    final PebbleEngine engine;
+    final MultiDirectoryLoader loader;
+    private final TemplateCache templates;
+    private @Nullable String runId; // guarded by ENGINES
+
+    CachedEngine(final PebbleEngine engine, final MultiDirectoryLoader loader, final TemplateCache templates) {
+      this.engine = engine;
+      this.loader = loader;
+      this.templates = templates;
+    }
+  }
+
+  /**
+   * A view of the shared template cache for a single engine.
+   */
+  static final class TemplateCache implements PebbleCache<Object, PebbleTemplate> {
+    @Override
+    public PebbleTemplate computeIfAbsent(final Object key, final Function<? super Object, ? extends PebbleTemplate> mappingFunction) {
+      final Key cacheKey = new Key(this, key);
+      synchronized (TEMPLATES) {
+        final PebbleTemplate existing = TEMPLATES.get(cacheKey);
+        if (existing != null) {
+          return existing;
+        }
+      }
+
+      // parse outside the lock, so templates can be parsed in parallel
+      final WorkerEvents.@Nullable TemplateParse event = WorkerEvents.enabled() ? new WorkerEvents.TemplateParse() : null;
+      if (event != null) {
+        event.begin();
+      }
+      final PebbleTemplate created = mappingFunction.apply(key);
+      if (event != null) {
+        event.template = key instanceof MultiDirectoryLoader.TemplateKey ? ((MultiDirectoryLoader.TemplateKey) key).name : String.valueOf(key);
+        event.commit();
+      }
+      synchronized (TEMPLATES) {
+        final PebbleTemplate existing = TEMPLATES.putIfAbsent(cacheKey, created);
+        if (existing != null) {
+          return existing;
+        }
+
+        templateWeight += cacheKey.weight();
+        final Iterator<Map.Entry<Key, PebbleTemplate>> it = TEMPLATES.entrySet().iterator();
+        while (templateWeight > MAX_TEMPLATE_WEIGHT && it.hasNext()) {
+          final Key eldest = it.next().getKey();
+          if (eldest.equals(cacheKey)) continue;
+          templateWeight -= eldest.weight();
+          it.remove();
+        }
+        return created;
+      }
+    }
+
+    @Override
+    public void invalidateAll() {
+      synchronized (TEMPLATES) {
+        final Iterator<Key> it = TEMPLATES.keySet().iterator();
+        while (it.hasNext()) {
+          final Key key = it.next();
+          if (key.owner == this) {
+            templateWeight -= key.weight();
+            it.remove();
+          }
+        }
+      }
+    }
+
+    static final class Key {
+      final TemplateCache owner;
+      final Object key;
+
+      Key(final TemplateCache owner, final Object key) {
+        this.owner = owner;
+        this.key = key;
+      }
+
+      long weight() {
+        if (this.key instanceof MultiDirectoryLoader.TemplateKey) {
+          return Math.max(((MultiDirectoryLoader.TemplateKey) this.key).size, 1);
+        } else {
+          return Math.max(this.key.toString().length(), 1);
+        }
+      }
+
+      @Override
+      public boolean equals(final Object other) {
+        if (this == other) return true;
+        if (!(other instanceof Key)) return false;
+        final Key that = (Key) other;
+        return this.owner == that.owner && this.key.equals(that.key);
+      }
+
+      @Override
+      public int hashCode() {
+        return Objects.hash(System.identityHashCode(this.owner), this.key);
+      }
+    }
+  }
+}
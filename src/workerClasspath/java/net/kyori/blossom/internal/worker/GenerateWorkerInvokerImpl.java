@@ -21,127 +21,490 @@
 package net.kyori.blossom.internal.worker;
 
 import io.pebbletemplates.pebble.PebbleEngine;
-import io.pebbletemplates.pebble.loader.Loader;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.gradle.api.GradleException;
-import org.gradle.api.InvalidUserDataException;
 import org.jetbrains.annotations.Nullable;
 
 public class GenerateWorkerInvokerImpl implements GenerateWorkerInvoker {
-  private static final String FILE_NAME_CACHE_DISAMBIGUATOR = "###";
-  private static final String PEBBLE_EXTENSION = ".peb";
-
   @Override
   public void generate(
     final TemplateParams globalParams,
     final Set<TemplateParams> variantParams,
+    final VariantMatrixSpec variantMatrix,
     final Set<Path> includePaths,
     final Set<Path> sourcePaths,
     final Path outputDirectory,
-    final @Nullable String header
+    final @Nullable String header,
+    final boolean incremental,
+    final Path previousManifest,
+    final Path manifestOutput,
+    final GenerationOptions options
   ) throws IOException {
-    // By default, resolves FS paths
-    // todo: restrict inputs to inputs and includes
-    final Loader<?> loader = this.makeLoader(sourcePaths, includePaths);
-    final PebbleEngine engine = new PebbleEngine.Builder()
-      .autoEscaping(false) // no html escaping
-      .defaultLocale(Locale.ROOT)
-      .loader(loader)
-      // .cacheActive(false) // xX: overlap between file names and template names causes issues
-      .strictVariables(true) // make sure to fail when vars are not present
-      .build();
-
-    final Set<Map<String, Object>> variants = PropertyFileIO.prepareDataForGeneration(globalParams, variantParams);
-
-    final Set<String> availableTemplates = this.collectTemplateNames(sourcePaths);
-    final Set<String> seenOutputs = new HashSet<>();
-
-    for (final String relativePath : availableTemplates) {
-      // Parse the template
-      final PebbleTemplate fileNameTemplate = engine.getLiteralTemplate(FILE_NAME_CACHE_DISAMBIGUATOR + relativePath);
-      final PebbleTemplate template = engine.getTemplate(relativePath);
-
-      // Then generate outputs for every variant
-      for (final Map<String, Object> variant : variants) {
-        String outputFile = this.evaluateToString(fileNameTemplate, variant)
-          .substring(FILE_NAME_CACHE_DISAMBIGUATOR.length());
-        if (outputFile.endsWith(PEBBLE_EXTENSION)) {
-          outputFile = outputFile.substring(0, outputFile.length() - PEBBLE_EXTENSION.length());
+    try (final WorkerEvents.Scope events = WorkerEvents.enable(options.flightRecorderEvents())) {
+      final @Nullable Path metricsReportDirectory = options.metricsReportDirectory();
+      final @Nullable Path budgetMeasurementsFile = options.budgetMeasurementsFile();
+      final GenerationMetrics metrics = metricsReportDirectory == null && budgetMeasurementsFile == null
+        ? GenerationMetrics.DISABLED
+        : new GenerationMetrics(true);
+      long phaseStart = metrics.start();
+      final EngineCache.CachedEngine cached = this.engine(sourcePaths, includePaths, options.runId());
+      final PebbleEngine engine = cached.engine;
+      final MultiDirectoryLoader loader = cached.loader;
+      metrics.phase("engine", phaseStart);
+
+      phaseStart = metrics.start();
+      final Iterable<Map<String, Object>> variants = PropertyFileIO.prepareDataForGeneration(globalParams, variantParams, variantMatrix);
+      metrics.phase("data", phaseStart);
+
+      phaseStart = metrics.start();
+      final Set<String> allTemplates = loader.templateNames(sourcePaths);
+      final Set<String> availableTemplates = new HashSet<>();
+      for (final String template : allTemplates) {
+        if (options.ownsTemplate(template)) {
+          availableTemplates.add(template);
         }
+      }
+      // the previous manifest tells us what's on disk, even when we can't generate incrementally
+      final @Nullable OutputManifest lastRun = OutputManifest.read(previousManifest);
+      final Map<String, String> previousHashes = lastRun == null ? Map.of() : lastRun.allHashes();
+      final Set<String> knownTemplates = new HashSet<>(allTemplates);
+      knownTemplates.addAll(loader.templateNames(includePaths));
+      final Map<String, String> sources = new HashMap<>();
+      for (final String template : knownTemplates) {
+        sources.put(TemplateDependencies.normalize(template), loader.createCacheKey(template).hash);
+      }
+      // if anything other than the templates changed, every output may be different
+      final String inputs = InputFingerprints.inputsOf(globalParams, variantParams, variantMatrix, header);
+      final @Nullable OutputManifest previous = incremental && lastRun != null && inputs.equals(lastRun.inputs()) ? lastRun : null;
+      final @Nullable Path renderCacheDirectory = options.renderCacheDirectory();
+      final @Nullable TemplateDependencies dependencies = previous != null || renderCacheDirectory != null
+        ? TemplateDependencies.scan(loader, knownTemplates)
+        : null;
+      final @Nullable RenderCache renderCache = renderCacheDirectory == null
+        ? null
+        : new RenderCache(renderCacheDirectory, new InputFingerprints(loader, dependencies, globalParams, variantParams, variantMatrix, header));
 
-        if (!seenOutputs.add(outputFile)) {
-          throw new InvalidUserDataException("Output file " + outputFile + " (a variant of input " + relativePath + ") has already been "
-            + "written in another variant!");
+      final OutputManifest manifest;
+      final Set<String> toRender;
+      if (previous != null) {
+        // incremental: only re-render templates that are affected by a changed file
+        // any outputs that are not produced again will be cleaned up once all shards have completed
+        final Set<String> changed = new HashSet<>();
+        for (final Map.Entry<String, String> source : sources.entrySet()) {
+          if (!source.getValue().equals(previous.sources().get(source.getKey()))) {
+            changed.add(source.getKey());
+          }
+        }
+        for (final String source : previous.sources().keySet()) {
+          if (!sources.containsKey(source)) {
+            changed.add(source);
+          }
         }
+        final Set<String> affected = dependencies.affectedBy(changed);
 
-        final Path output = outputDirectory.resolve(outputFile);
-        Files.createDirectories(output.getParent());
-        try (final BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
-          if (header != null) {
-            writer.write(header);
-            // Only insert a newline if there's absolutely nothing -- otherwise it's up to the header provided
-            if (!header.endsWith("\n")) {
-              writer.newLine();
-            }
+        manifest = previous.filter(options::ownsTemplate);
+        for (final String template : Set.copyOf(manifest.templates())) {
+          if (!availableTemplates.contains(template)
+            || affected.contains(TemplateDependencies.normalize(template))
+            || !outputsIntact(outputDirectory, manifest, template)) {
+            manifest.remove(template);
           }
-          template.evaluate(writer, variant);
         }
+
+        toRender = new HashSet<>();
+        for (final String template : availableTemplates) {
+          if (!manifest.templates().contains(template)) {
+            toRender.add(template);
+          }
+        }
+      } else {
+        manifest = new OutputManifest();
+        toRender = availableTemplates;
+      }
+
+      metrics.phase("discover", phaseStart);
+
+      // Work out where every output goes before rendering anything
+      phaseStart = metrics.start();
+      final List<String> sortedTemplates = new ArrayList<>(toRender);
+      Collections.sort(sortedTemplates);
+      final List<RenderUnit> units = OutputPlan.create(EngineCache.nameEngine(), sortedTemplates, variants, manifest);
+      metrics.phase("plan", phaseStart);
+
+      // Then actually render
+      phaseStart = metrics.start();
+      final RenderContext context = new RenderContext(engine, renderCache, outputDirectory, header, options, previousHashes, metrics);
+      final List<String> hashes;
+      if (options.parallelism() == 1 || units.size() <= 1) {
+        hashes = new ArrayList<>(units.size());
+        for (final RenderUnit unit : units) {
+          hashes.add(this.renderUnit(context, unit));
+        }
+      } else {
+        hashes = this.renderParallel(context, units);
+      }
+      metrics.phase("render", phaseStart);
+
+      phaseStart = metrics.start();
+      for (int i = 0; i < units.size(); i++) {
+        final RenderUnit unit = units.get(i);
+        manifest.put(unit.template, unit.output, hashes.get(i));
+        final @Nullable String stamp = OutputManifest.currentStamp(outputDirectory.resolve(unit.output));
+        if (stamp != null) {
+          manifest.stamp(unit.output, stamp);
+        }
+      }
+      manifest.inputs(inputs);
+      sources.forEach(manifest::source);
+      manifest.write(manifestOutput);
+      metrics.phase("manifest", phaseStart);
+
+      if (metricsReportDirectory != null) {
+        final String reportName = options.shardCount() == 1 ? "metrics" : "metrics-shard" + options.shardIndex();
+        metrics.writeReport(metricsReportDirectory, reportName, globalParams.name());
+        metrics.logSlowest(options.slowestTemplatesToLog());
+      }
+      if (budgetMeasurementsFile != null) {
+        metrics.budgetMeasurements().write(budgetMeasurementsFile);
       }
     }
+  }
+
+  @Override
+  public void plan(
+    final TemplateParams globalParams,
+    final Set<TemplateParams> variantParams,
+    final VariantMatrixSpec variantMatrix,
+    final Set<Path> includePaths,
+    final Set<Path> sourcePaths,
+    final @Nullable String header,
+    final @Nullable String runId,
+    final Path planOutput
+  ) throws IOException {
+    final MultiDirectoryLoader loader = this.engine(sourcePaths, includePaths, runId).loader;
+    final Iterable<Map<String, Object>> variants = PropertyFileIO.prepareDataForGeneration(globalParams, variantParams, variantMatrix);
+
+    final List<String> sortedTemplates = new ArrayList<>(loader.templateNames(sourcePaths));
+    Collections.sort(sortedTemplates);
+    final Set<String> knownTemplates = new HashSet<>(sortedTemplates);
+    knownTemplates.addAll(loader.templateNames(includePaths));
+    final InputFingerprints fingerprints = new InputFingerprints(
+      loader,
+      TemplateDependencies.scan(loader, knownTemplates),
+      globalParams,
+      variantParams,
+      variantMatrix,
+      header
+    );
 
+    // only file names are evaluated, template contents are never parsed
+    final List<RenderUnit> units = OutputPlan.create(EngineCache.nameEngine(), sortedTemplates, variants, new OutputManifest());
+
+    Files.createDirectories(planOutput.getParent());
+    try (final JsonWriter json = new JsonWriter(Files.newBufferedWriter(planOutput, StandardCharsets.UTF_8))) {
+      json.beginObject()
+        .name("version").value(1)
+        .name("templateSet").value(globalParams.name())
+        .name("outputs").beginArray();
+      for (final RenderUnit unit : units) {
+        final @Nullable Object variant = unit.variant.get("variant");
+        json.beginObject()
+          .name("output").value(TemplateDependencies.normalize(unit.output))
+          .name("template").value(TemplateDependencies.normalize(unit.template))
+          .name("variant").value(variant == null ? null : variant.toString())
+          .name("templateHash").value(fingerprints.templateHash(unit.template))
+          .name("inputFingerprint").value(fingerprints.of(unit.template, unit.variant))
+          .endObject();
+      }
+      json.endArray().endObject();
+    }
   }
 
-  private Loader<?> makeLoader(final Set<Path> sourcePaths, final Set<Path> includePaths) {
-    return new MultiDirectoryLoader(
+  private EngineCache.CachedEngine engine(final Set<Path> sourcePaths, final Set<Path> includePaths, final @Nullable String runId) {
+    // By default, resolves FS paths
+    // todo: restrict inputs to inputs and includes
+    // Engines (and their parsed templates) are kept around for as long as this class loader is
+    return EngineCache.engine(
       Stream.concat(sourcePaths.stream(), includePaths.stream()).collect(Collectors.toList()),
-      StandardCharsets.UTF_8
+      runId,
+      loader -> new PebbleEngine.Builder()
+        .autoEscaping(false) // no html escaping
+        .defaultLocale(Locale.ROOT)
+        .loader(loader)
+        .strictVariables(true) // make sure to fail when vars are not present
+        .extension(TemplateExtensions.all())
     );
   }
 
-  private Set<String> collectTemplateNames(final Set<Path> sourceDirs) {
-    final Set<String> templateNames = new HashSet<>();
-    for (final Path sourcePath : sourceDirs) {
-      try {
-        Files.walkFileTree(sourcePath, new FileVisitor<>() {
-          // @formatter:off
-          @Override public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) { return FileVisitResult.CONTINUE; }
-          @Override public FileVisitResult visitFileFailed(final Path file, final IOException exc) { return FileVisitResult.CONTINUE; }
-          @Override public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) { return FileVisitResult.CONTINUE; }
-          // @formatter:on
-
-          @Override
-          public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
-            // Parse the template
-            templateNames.add(sourcePath.relativize(file).toString());
-            return FileVisitResult.CONTINUE;
-          }
-        });
-      } catch (final IOException ex) {
-        throw new GradleException("Exception encountered when gathering template names in source directory '" + sourcePath + "'", ex);
+  /**
+   * Render a single unit.
+   *
+   * @return the hash of the rendered contents
+   */
+  private String renderUnit(final RenderContext context, final RenderUnit unit) throws IOException {
+    final GenerationMetrics.@Nullable Unit metrics = context.metrics.unit(unit);
+    final Path output = context.outputDirectory.resolve(unit.output);
+    Files.createDirectories(output.getParent());
+
+    @Nullable byte[] contents = null;
+    @Nullable String cacheKey = null;
+    if (context.renderCache != null) {
+      // a cache hit saves both parsing and evaluating the template
+      cacheKey = context.renderCache.key(unit.template, unit.variant);
+      contents = context.renderCache.get(cacheKey);
+      if (metrics != null) {
+        metrics.cached = contents != null;
       }
     }
 
-    return Set.copyOf(templateNames);
+    if (contents == null) {
+      final long parseStart = context.metrics.start();
+      final PebbleTemplate template = context.engine.getTemplate(unit.template);
+      final long renderStart = context.metrics.start();
+      final WorkerEvents.@Nullable TemplateRender renderEvent = WorkerEvents.enabled() ? new WorkerEvents.TemplateRender() : null;
+      if (renderEvent != null) {
+        renderEvent.begin();
+      }
+      if (cacheKey == null && !context.options.writeIfChanged() && metrics == null) {
+        // nothing needs the contents in memory, so stream them straight to disk
+        final MessageDigest digest = ContentHash.digest();
+        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(new DigestOutputStream(Files.newOutputStream(output), digest), StandardCharsets.UTF_8))) {
+          this.render(writer, template, unit.variant, context.header);
+        }
+        if (renderEvent != null) {
+          commitRender(renderEvent, unit, true);
+        }
+        return ContentHash.toHex(digest.digest());
+      }
+
+      final StringWriter writer = new StringWriter();
+      this.render(writer, template, unit.variant, context.header);
+      contents = writer.toString().getBytes(StandardCharsets.UTF_8);
+      if (renderEvent != null) {
+        commitRender(renderEvent, unit, false);
+      }
+      if (metrics != null) {
+        metrics.parseNanos = renderStart - parseStart;
+        metrics.renderNanos = System.nanoTime() - renderStart;
+      }
+      if (cacheKey != null) {
+        context.renderCache.put(cacheKey, contents);
+      }
+    }
+
+    final long writeStart = context.metrics.start();
+    final WorkerEvents.@Nullable OutputWrite writeEvent = WorkerEvents.enabled() ? new WorkerEvents.OutputWrite() : null;
+    if (writeEvent != null) {
+      writeEvent.begin();
+    }
+    final String hash = ContentHash.of(contents);
+    if (context.options.writeIfChanged()) {
+      this.writeIfChanged(output, contents, hash, context.previousHashes.get(unit.output));
+    } else {
+      Files.write(output, contents);
+    }
+    if (writeEvent != null) {
+      writeEvent.output = unit.output;
+      writeEvent.size = contents.length;
+      writeEvent.commit();
+    }
+    if (metrics != null) {
+      metrics.writeNanos = System.nanoTime() - writeStart;
+      metrics.bytes = contents.length;
+    }
+    return hash;
+  }
+
+  private static void commitRender(final WorkerEvents.TemplateRender event, final RenderUnit unit, final boolean streamed) {
+    final @Nullable Object variant = unit.variant.get("variant");
+    event.template = unit.template;
+    event.variant = variant == null ? null : variant.toString();
+    event.output = unit.output;
+    event.streamed = streamed;
+    event.commit();
+  }
+
+  /**
+   * Render every unit across a pool of threads.
+   *
+   * <p>Every unit is attempted even if some fail, so that the errors reported do not depend on scheduling order.</p>
+   */
+  private List<String> renderParallel(final RenderContext context, final List<RenderUnit> units) throws IOException {
+    final AtomicInteger threadCount = new AtomicInteger();
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.min(context.options.parallelism(), units.size()), task -> {
+      final Thread thread = new Thread(task, "blossom-render-" + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    final List<Future<String>> results = new ArrayList<>(units.size());
+    try {
+      for (final RenderUnit unit : units) {
+        results.add(executor.submit(() -> this.renderUnit(context, unit)));
+      }
+
+      final List<String> hashes = new ArrayList<>(units.size());
+      final List<Throwable> failures = new ArrayList<>();
+      final StringBuilder message = new StringBuilder();
+      for (int i = 0; i < units.size(); i++) {
+        try {
+          hashes.add(results.get(i).get());
+        } catch (final ExecutionException ex) {
+          failures.add(ex.getCause());
+          message.append(System.lineSeparator()).append("- ").append(units.get(i).describe()).append(": ").append(ex.getCause().getMessage());
+        }
+      }
+
+      if (failures.size() == 1) {
+        // rethrow as-is, to match sequential rendering
+        final Throwable failure = failures.get(0);
+        if (failure instanceof IOException) {
+          throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+          throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+          throw (Error) failure;
+        }
+      }
+      if (!failures.isEmpty()) {
+        final GradleException ex = new GradleException("Failed to render " + failures.size() + " template outputs:" + message, failures.get(0));
+        for (int i = 1; i < failures.size(); i++) {
+          ex.addSuppressed(failures.get(i));
+        }
+        throw ex;
+      }
+      return hashes;
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Interrupted while rendering templates", ex);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void render(final Writer writer, final PebbleTemplate template, final Map<String, Object> variant, final @Nullable String header) throws IOException {
+    if (header != null) {
+      writer.write(header);
+      // Only insert a newline if there's absolutely nothing -- otherwise it's up to the header provided
+      if (!header.endsWith("\n")) {
+        writer.write(System.lineSeparator());
+      }
+    }
+    // variant data is shared between renders, so give each render its own scope for any variables it sets
+    template.evaluate(writer, new LayeredMap(variant));
+  }
+
+  /**
+   * Whether every output of a template is still on disk as it was written, since nothing else tells us about edits to the output directory.
+   *
+   * <p>Only outputs whose size or modification time changed are read and hashed. Those that turn out to be unchanged are stamped again.</p>
+   */
+  private static boolean outputsIntact(final Path outputDirectory, final OutputManifest manifest, final String template) throws IOException {
+    for (final String output : manifest.outputs(template)) {
+      final Path file = outputDirectory.resolve(output);
+      final @Nullable String stamp = OutputManifest.currentStamp(file);
+      if (stamp == null) {
+        return false;
+      }
+      if (!stamp.equals(manifest.stamp(output))) {
+        if (!ContentHash.of(Files.readAllBytes(file)).equals(manifest.hash(template, output))) {
+          return false;
+        }
+        manifest.stamp(output, stamp);
+      }
+    }
+    return true;
   }
 
-  private String evaluateToString(final PebbleTemplate template, final Map<String, Object> data) throws IOException {
-    final StringWriter writer = new StringWriter();
-    template.evaluate(writer, data);
-    return writer.toString();
+  /**
+   * Write an output file only if its contents differ from what's currently on disk.
+   *
+   * <p>This leaves the timestamp of unchanged files intact, so tools further down the line can see that nothing has changed.</p>
+   *
+   * <p>If the hash recorded for the output in the last run differs from the new hash, the output is known to have changed
+   * and the existing file is not read at all.</p>
+   *
+   * @param output the output file
+   * @param contents the new contents
+   * @param hash the hash of the new contents
+   * @param previousHash the hash recorded for the output in the last run, if any
+   * @throws IOException if unable to read or write the output
+   */
+  private void writeIfChanged(final Path output, final byte[] contents, final String hash, final @Nullable String previousHash) throws IOException {
+    final boolean knownChanged = previousHash != null && !previousHash.isEmpty() && !previousHash.equals(hash);
+    if (!knownChanged && Files.isRegularFile(output) && Files.size(output) == contents.length && Arrays.equals(Files.readAllBytes(output), contents)) {
+      return;
+    }
+
+    final Path temp = Files.createTempFile(output.getParent(), output.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temp, contents);
+      try {
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (final AtomicMoveNotSupportedException ex) {
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Everything needed to render units, shared across a generation run.
+   */
+  private static final class RenderContext {
+    final PebbleEngine engine;
+    final @Nullable RenderCache renderCache;
+    final Path outputDirectory;
+    final @Nullable String header;
+    final GenerationOptions options;
+    // output -> content hash from the last run
+    final Map<String, String> previousHashes;
+    final GenerationMetrics metrics;
+
+    RenderContext(
+      final PebbleEngine engine,
+      final @Nullable RenderCache renderCache,
+      final Path outputDirectory,
+      final @Nullable String header,
+      final GenerationOptions options,
+      final Map<String, String> previousHashes,
+      final GenerationMetrics metrics
+    ) {
+      this.engine = engine;
+      this.renderCache = renderCache;
+      this.outputDirectory = outputDirectory;
+      this.header = header;
+      this.options = options;
+      this.previousHashes = previousHashes;
+      this.metrics = metrics;
+    }
   }
 }
@@ -0,0 +1,295 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Timings for a single generation run, broken down by phase and by output.
+ *
+ * <p>When disabled, every method returns immediately, so instrumented code costs no more than a branch.</p>
+ */
+final class GenerationMetrics {
+  static final GenerationMetrics DISABLED = new GenerationMetrics(false);
+  private static final Logger LOGGER = Logging.getLogger(GenerationMetrics.class);
+
+  private final boolean enabled;
+  private final Map<String, Long> phases = new LinkedHashMap<>();
+  private final Queue<Unit> units = new ConcurrentLinkedQueue<>();
+  // every unit of a variant shares its data, so the size is only counted once per variant
+  private final Map<Map<String, Object>, Integer> contextSizes = Collections.synchronizedMap(new IdentityHashMap<>());
+
+  GenerationMetrics(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  boolean enabled() {
+    return this.enabled;
+  }
+
+  /**
+   * Get a timestamp to measure from.
+   *
+   * @return the current time in nanoseconds, or {@code 0} if disabled
+   */
+  long start() {
+    return this.enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Record the end of a phase of generation.
+   *
+   * @param phase the phase name
+   * @param start the time the phase started, from {@link #start()}
+   */
+  void phase(final String phase, final long start) {
+    if (this.enabled) {
+      this.phases.merge(phase, System.nanoTime() - start, Long::sum);
+    }
+  }
+
+  /**
+   * Begin recording timings for a single output.
+   *
+   * @param unit the unit being rendered
+   * @return a record to fill in, or {@code null} if disabled
+   */
+  @Nullable Unit unit(final RenderUnit unit) {
+    if (!this.enabled) {
+      return null;
+    }
+    final @Nullable Object variant = unit.variant.get("variant");
+    // LayeredMap counts keys without reading values, so lazily parsed data stays unparsed
+    final int contextSize = this.contextSizes.computeIfAbsent(unit.variant, Map::size);
+    final Unit ret = new Unit(unit.template, variant == null ? null : variant.toString(), unit.output, contextSize);
+    this.units.add(ret);
+    return ret;
+  }
+
+  /**
+   * Write a JSON and an HTML report of every recorded timing.
+   *
+   * @param directory the directory to write to
+   * @param baseName the file name for reports, without extension
+   * @param setName the name of the template set
+   * @throws IOException if unable to write
+   */
+  void writeReport(final Path directory, final String baseName, final String setName) throws IOException {
+    if (!this.enabled) return;
+
+    Files.createDirectories(directory);
+    final List<Unit> units = this.sortedUnits();
+    try (final JsonWriter json = new JsonWriter(Files.newBufferedWriter(directory.resolve(baseName + ".json"), StandardCharsets.UTF_8))) {
+      json.beginObject()
+        .name("version").value(1)
+        .name("templateSet").value(setName);
+      json.name("phases").beginObject();
+      for (final Map.Entry<String, Long> phase : this.phases.entrySet()) {
+        json.name(phase.getKey()).value(millis(phase.getValue()));
+      }
+      json.endObject();
+
+      json.name("templates").beginArray();
+      for (final Map.Entry<String, Long> template : this.totalsByTemplate().entrySet()) {
+        json.beginObject()
+          .name("template").value(template.getKey())
+          .name("totalMs").value(millis(template.getValue()))
+          .endObject();
+      }
+      json.endArray();
+
+      json.name("outputs").beginArray();
+      for (final Unit unit : units) {
+        json.beginObject()
+          .name("output").value(unit.output)
+          .name("template").value(unit.template)
+          .name("variant").value(unit.variant)
+          .name("cached").value(unit.cached)
+          .name("parseMs").value(millis(unit.parseNanos))
+          .name("renderMs").value(millis(unit.renderNanos))
+          .name("writeMs").value(millis(unit.writeNanos))
+          .name("bytes").value(unit.bytes)
+          .name("contextSize").value(unit.contextSize)
+          .endObject();
+      }
+      json.endArray();
+      json.endObject();
+    }
+
+    try (final Writer html = Files.newBufferedWriter(directory.resolve(baseName + ".html"), StandardCharsets.UTF_8)) {
+      this.writeHtml(html, setName, units);
+    }
+  }
+
+  /**
+   * Log the templates that took the longest to process, summed over all variants.
+   *
+   * @param count the number of templates to log
+   */
+  void logSlowest(final int count) {
+    if (!this.enabled || count <= 0 || this.units.isEmpty()) return;
+
+    final StringBuilder message = new StringBuilder("Slowest templates:");
+    int logged = 0;
+    for (final Map.Entry<String, Long> template : this.totalsByTemplate().entrySet()) {
+      if (logged++ == count) break;
+      message.append(System.lineSeparator())
+        .append(String.format(Locale.ROOT, "  %8.1f ms  %s", millis(template.getValue()), template.getKey()));
+    }
+    LOGGER.lifecycle(message.toString());
+  }
+
+  /**
+   * Collect the measurements needed to check a generation budget.
+   *
+   * @return the budget measurements
+   */
+  BudgetMeasurements budgetMeasurements() {
+    final BudgetMeasurements ret = new BudgetMeasurements();
+    for (final Unit unit : this.units) {
+      ret.template(unit.template, unit.totalNanos());
+      ret.output(unit.output, unit.bytes);
+    }
+    return ret;
+  }
+
+  private List<Unit> sortedUnits() {
+    final List<Unit> ret = new ArrayList<>(this.units);
+    ret.sort(Comparator.comparingLong(Unit::totalNanos).reversed());
+    return ret;
+  }
+
+  // template name -> total time, slowest first
+  private Map<String, Long> totalsByTemplate() {
+    final Map<String, Long> totals = new HashMap<>();
+    for (final Unit unit : this.units) {
+      totals.merge(unit.template, unit.totalNanos(), Long::sum);
+    }
+    final List<Map.Entry<String, Long>> entries = new ArrayList<>(totals.entrySet());
+    entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+    final Map<String, Long> ret = new LinkedHashMap<>();
+    for (final Map.Entry<String, Long> entry : entries) {
+      ret.put(entry.getKey(), entry.getValue());
+    }
+    return ret;
+  }
+
+  private void writeHtml(final Writer out, final String setName, final List<Unit> units) throws IOException {
+    out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Blossom generation metrics: ");
+    out.write(escape(setName));
+    out.write("</title>\n<style>\n"
+      + "body { font-family: sans-serif; margin: 2em; }\n"
+      + "table { border-collapse: collapse; margin-bottom: 2em; }\n"
+      + "th, td { border: 1px solid #ccc; padding: 0.2em 0.6em; text-align: left; }\n"
+      + "td.number { text-align: right; font-variant-numeric: tabular-nums; }\n"
+      + "</style>\n</head>\n<body>\n");
+    out.write("<h1>Template set " + escape(setName) + "</h1>\n");
+
+    out.write("<h2>Phases</h2>\n<table>\n<tr><th>Phase</th><th>Time (ms)</th></tr>\n");
+    for (final Map.Entry<String, Long> phase : this.phases.entrySet()) {
+      out.write("<tr><td>" + escape(phase.getKey()) + "</td>" + number(millis(phase.getValue())) + "</tr>\n");
+    }
+    out.write("</table>\n");
+
+    out.write("<h2>Outputs</h2>\n<table>\n<tr><th>Output</th><th>Template</th><th>Variant</th><th>Parse (ms)</th><th>Render (ms)</th>"
+      + "<th>Write (ms)</th><th>Bytes</th><th>Context size</th></tr>\n");
+    for (final Unit unit : units) {
+      out.write("<tr><td>" + escape(unit.output) + (unit.cached ? " (cached)" : "") + "</td>"
+        + "<td>" + escape(unit.template) + "</td>"
+        + "<td>" + (unit.variant == null ? "" : escape(unit.variant)) + "</td>"
+        + number(millis(unit.parseNanos))
+        + number(millis(unit.renderNanos))
+        + number(millis(unit.writeNanos))
+        + "<td class=\"number\">" + unit.bytes + "</td>"
+        + "<td class=\"number\">" + unit.contextSize + "</td></tr>\n");
+    }
+    out.write("</table>\n</body>\n</html>\n");
+  }
+
+  private static String number(final double value) {
+    return String.format(Locale.ROOT, "<td class=\"number\">%.2f</td>", value);
+  }
+
+  private static double millis(final long nanos) {
+    return nanos / 1_000_000d;
+  }
+
+  private static String escape(final String text) {
+    final StringBuilder ret = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      switch (c) {
+        case '<': ret.append("&lt;"); break;
+        case '>': ret.append("&gt;"); break;
+        case '&': ret.append("&amp;"); break;
+        case '"': ret.append("&quot;"); break;
+        default: ret.append(c);
+      }
+    }
+    return ret.toString();
+  }
+
+  /**
+   * Timings for a single output.
+   *
+   * <p>Each unit is only ever filled in by the thread rendering it.</p>
+   */
+  static final class Unit {
+    final String template;
+    final @Nullable String variant;
+    final String output;
+    final int contextSize;
+    boolean cached;
+    long parseNanos;
+    long renderNanos;
+    long writeNanos;
+    long bytes;
+
+    Unit(final String template, final @Nullable String variant, final String output, final int contextSize) {
+      this.template = template;
+      this.variant = variant;
+      this.output = output;
+      this.contextSize = contextSize;
+    }
+
+    long totalNanos() {
+      return this.parseNanos + this.renderNanos + this.writeNanos;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Fingerprints of everything that can influence a single output: the contents of the template and every template it may
+ * refer to, the data for the variant being rendered, and the header.
+ */
+final class InputFingerprints {
+  // bump when changing what goes into a fingerprint
+  private static final String VERSION = "3";
+
+  private final MultiDirectoryLoader loader;
+  private final TemplateDependencies dependencies;
+  private final byte[] globalFingerprint;
+  private final boolean variants;
+  private final Map<String, String> variantFingerprints;
+  private final @Nullable String header;
+
+  InputFingerprints(
+    final MultiDirectoryLoader loader,
+    final TemplateDependencies dependencies,
+    final TemplateParams globalParams,
+    final Set<TemplateParams> variantParams,
+    final VariantMatrixSpec variantMatrix,
+    final @Nullable String header
+  ) {
+    this.loader = loader;
+    this.dependencies = dependencies;
+    this.globalFingerprint = globalFingerprint(globalParams, variantMatrix);
+    this.variants = !variantParams.isEmpty() || !variantMatrix.isEmpty();
+    this.variantFingerprints = fingerprintVariants(this.globalFingerprint, variantParams);
+    this.header = header;
+  }
+
+  /**
+   * Get the hash of a single template's contents.
+   *
+   * @param template the template name
+   * @return the content hash
+   */
+  String templateHash(final String template) {
+    return this.loader.createCacheKey(template).hash;
+  }
+
+  /**
+   * Compute the fingerprint of the inputs for one output.
+   *
+   * @param template the template name
+   * @param variant the variant data
+   * @return the fingerprint
+   */
+  String of(final String template, final Map<String, Object> variant) {
+    final MessageDigest digest = ContentHash.digest();
+    update(digest, VERSION);
+    update(digest, String.valueOf(PebbleEngine.class.getPackage().getImplementationVersion()));
+    update(digest, TemplateExtensions.fingerprint());
+    update(digest, TemplateDependencies.normalize(template));
+    update(digest, this.header == null ? "\0" : this.header);
+    update(digest, System.lineSeparator());
+    if (this.variants) {
+      final String variantName = String.valueOf(variant.get("variant"));
+      final @Nullable String fingerprint = this.variantFingerprints.get(variantName);
+      if (fingerprint != null) {
+        update(digest, fingerprint);
+      } else {
+        digest.update(this.globalFingerprint);
+        update(digest, variantName);
+      }
+    } else {
+      digest.update(this.globalFingerprint);
+    }
+
+    final List<String> closure = new ArrayList<>(this.dependencies.closureOf(template));
+    closure.sort(null);
+    for (final String name : closure) {
+      update(digest, name);
+      update(digest, this.loader.createCacheKey(name).hash);
+    }
+    return ContentHash.toHex(digest.digest());
+  }
+
+  /**
+   * Compute a fingerprint of every input that can influence outputs, other than the templates themselves.
+   *
+   * <p>When this is unchanged since the last run, only outputs of changed templates need to be rendered again.</p>
+   *
+   * @param globalParams the parameters for the whole template set
+   * @param variantParams the parameters for each declared variant
+   * @param variantMatrix the variant matrix
+   * @param header the header, if any
+   * @return the fingerprint
+   */
+  static String inputsOf(
+    final TemplateParams globalParams,
+    final Set<TemplateParams> variantParams,
+    final VariantMatrixSpec variantMatrix,
+    final @Nullable String header
+  ) {
+    final MessageDigest digest = ContentHash.digest();
+    update(digest, VERSION);
+    update(digest, String.valueOf(PebbleEngine.class.getPackage().getImplementationVersion()));
+    update(digest, TemplateExtensions.fingerprint());
+    update(digest, header == null ? "\0" : header);
+    update(digest, System.lineSeparator());
+    final byte[] global = globalFingerprint(globalParams, variantMatrix);
+    digest.update(global);
+    for (final Map.Entry<String, String> variant : new TreeMap<>(fingerprintVariants(global, variantParams)).entrySet()) {
+      update(digest, variant.getKey());
+      update(digest, variant.getValue());
+    }
+    return ContentHash.toHex(digest.digest());
+  }
+
+  // Data is fingerprinted from its inputs rather than its parsed form, so we don't need to walk every variant's data
+
+  private static byte[] globalFingerprint(final TemplateParams globalParams, final VariantMatrixSpec variantMatrix) {
+    final MessageDigest digest = ContentHash.digest();
+    fingerprint(digest, globalParams);
+    // matrix variants are identified by their name within the matrix
+    final StringBuilder matrix = new StringBuilder();
+    canonicalize(matrix, variantMatrix.axes());
+    canonicalize(matrix, variantMatrix.exclusions());
+    update(digest, matrix.toString());
+    return digest.digest();
+  }
+
+  private static Map<String, String> fingerprintVariants(final byte[] global, final Set<TemplateParams> variantParams) {
+    final Map<String, String> ret = new HashMap<>();
+    for (final TemplateParams variant : variantParams) {
+      final MessageDigest digest = ContentHash.digest();
+      digest.update(global);
+      fingerprint(digest, variant);
+      ret.put(variant.name(), ContentHash.toHex(digest.digest()));
+    }
+    return ret;
+  }
+
+  private static void fingerprint(final MessageDigest digest, final TemplateParams params) {
+    update(digest, params.name());
+    // files are identified by name and contents rather than location, so fingerprints are the same in every checkout
+    final List<String> files = new ArrayList<>(params.files().size());
+    for (final Path file : params.files()) {
+      files.add(file.getFileName() + "\0" + contentHash(file));
+    }
+    files.sort(null);
+    for (final String file : files) {
+      update(digest, file);
+    }
+    final StringBuilder data = new StringBuilder();
+    canonicalize(data, params.data());
+    update(digest, data.toString());
+  }
+
+  private static String contentHash(final Path file) {
+    try {
+      return Files.isRegularFile(file) ? ContentHash.of(Files.readAllBytes(file)) : "\0";
+    } catch (final IOException ex) {
+      return "\0";
+    }
+  }
+
+  private static void canonicalize(final StringBuilder out, final @Nullable Object value) {
+    if (value == null) {
+      out.append('~');
+    } else if (value instanceof Map<?, ?>) {
+      final Map<String, Object> sorted = new TreeMap<>();
+      for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+      }
+      out.append('{');
+      for (final Map.Entry<String, Object> entry : sorted.entrySet()) {
+        canonicalize(out, entry.getKey());
+        canonicalize(out, entry.getValue());
+      }
+      out.append('}');
+    } else if (value instanceof Collection<?>) {
+      out.append('[');
+      for (final Object element : (Collection<?>) value) {
+        canonicalize(out, element);
+      }
+      out.append(']');
+    } else {
+      final String string = String.valueOf(value);
+      out.append(value.getClass().getName()).append(':').append(string.length()).append(':').append(string);
+    }
+  }
+
+  private static void update(final MessageDigest digest, final String value) {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    digest.update((byte) (bytes.length >>> 24));
+    digest.update((byte) (bytes.length >>> 16));
+    digest.update((byte) (bytes.length >>> 8));
+    digest.update((byte) bytes.length);
+    digest.update(bytes);
+  }
+}
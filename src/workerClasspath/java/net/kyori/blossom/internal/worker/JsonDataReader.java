@@ -0,0 +1,355 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.gradle.api.InvalidUserDataException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A streaming reader for JSON data files.
+ *
+ * <p>Values are read straight from a buffered character stream into immutable collections, without building a
+ * document tree first, and numbers are given the same types the YAML parser would produce. Object keys are
+ * deduplicated while reading, since large data files tend to repeat the same keys many times.</p>
+ */
+final class JsonDataReader {
+  private static final int BUFFER_SIZE = 8192;
+  private static final int MAX_DEPTH = 512;
+
+  private final Reader reader;
+  private final String label;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final StringBuilder scratch = new StringBuilder();
+  private final Map<String, String> keys = new HashMap<>();
+  private int position;
+  private int limit;
+  private int line;
+  // the offset of the current line's first character, relative to the start of the buffer
+  private int lineStart;
+  private int depth;
+
+  private JsonDataReader(final Reader reader, final String label, final int firstLine) {
+    this.reader = reader;
+    this.label = label;
+    this.line = firstLine;
+  }
+
+  /**
+   * Read a JSON document holding a single value.
+   *
+   * @param reader the source of the document
+   * @param label a description of the source, for error messages
+   * @return the immutable value
+   * @throws IOException if unable to read from the source
+   */
+  static @Nullable Object read(final Reader reader, final String label) throws IOException {
+    return read(reader, label, 1);
+  }
+
+  /**
+   * Read a JSON document holding a single value, which starts part way through a larger file.
+   *
+   * @param reader the source of the document
+   * @param label a description of the source, for error messages
+   * @param firstLine the line of the larger file the document starts on
+   * @return the immutable value
+   * @throws IOException if unable to read from the source
+   */
+  static @Nullable Object read(final Reader reader, final String label, final int firstLine) throws IOException {
+    final JsonDataReader json = new JsonDataReader(reader, label, firstLine);
+    json.skipByteOrderMark();
+    final @Nullable Object value = json.readValue();
+    if (json.skipWhitespace()) {
+      throw json.error("Unexpected content after the end of the document");
+    }
+    return value;
+  }
+
+  private @Nullable Object readValue() throws IOException {
+    if (!this.skipWhitespace()) {
+      throw this.error("Unexpected end of input");
+    }
+    final char c = this.buffer[this.position];
+    switch (c) {
+      case '{': return this.readObject();
+      case '[': return this.readArray();
+      case '"':
+        this.position++;
+        return this.readString();
+      case 't':
+        this.expectWord("true");
+        return Boolean.TRUE;
+      case 'f':
+        this.expectWord("false");
+        return Boolean.FALSE;
+      case 'n':
+        this.expectWord("null");
+        return null;
+      default:
+        if (c == '-' || c >= '0' && c <= '9') {
+          return this.readNumber();
+        }
+        throw this.error("Unexpected character '" + c + "'");
+    }
+  }
+
+  private Map<Object, Object> readObject() throws IOException {
+    this.enter();
+    this.position++; // {
+    final Map<Object, Object> ret = new LinkedHashMap<>();
+    if (this.peekAfterWhitespace() == '}') {
+      this.position++;
+      this.depth--;
+      return Collections.unmodifiableMap(ret);
+    }
+    while (true) {
+      if (this.peekAfterWhitespace() != '"') {
+        throw this.error("Expected an object key");
+      }
+      this.position++;
+      final String key = this.keys.computeIfAbsent(this.readString(), k -> k);
+      if (this.peekAfterWhitespace() != ':') {
+        throw this.error("Expected ':' after object key");
+      }
+      this.position++;
+      ret.put(key, this.readValue());
+
+      final int next = this.peekAfterWhitespace();
+      this.position++;
+      if (next == '}') {
+        break;
+      } else if (next != ',') {
+        this.position--;
+        throw this.error("Expected ',' or '}' in object");
+      }
+    }
+    this.depth--;
+    return Collections.unmodifiableMap(ret);
+  }
+
+  private List<Object> readArray() throws IOException {
+    this.enter();
+    this.position++; // [
+    final ArrayList<Object> ret = new ArrayList<>();
+    if (this.peekAfterWhitespace() == ']') {
+      this.position++;
+      this.depth--;
+      return Collections.unmodifiableList(ret);
+    }
+    while (true) {
+      ret.add(this.readValue());
+
+      final int next = this.peekAfterWhitespace();
+      this.position++;
+      if (next == ']') {
+        break;
+      } else if (next != ',') {
+        this.position--;
+        throw this.error("Expected ',' or ']' in array");
+      }
+    }
+    this.depth--;
+    ret.trimToSize();
+    return Collections.unmodifiableList(ret);
+  }
+
+  private void enter() {
+    if (++this.depth > MAX_DEPTH) {
+      throw this.error("Values are nested more than " + MAX_DEPTH + " levels deep");
+    }
+  }
+
+  // called after the opening quote
+  private String readString() throws IOException {
+    // fast path: the whole string is in the buffer, and has no escapes
+    for (int i = this.position; i < this.limit; i++) {
+      final char c = this.buffer[i];
+      if (c == '"') {
+        final String ret = new String(this.buffer, this.position, i - this.position);
+        this.position = i + 1;
+        return ret;
+      } else if (c == '\\' || c < 0x20) {
+        break;
+      }
+    }
+
+    final StringBuilder out = this.scratch;
+    out.setLength(0);
+    while (true) {
+      if (this.position == this.limit && !this.fill()) {
+        throw this.error("Unterminated string");
+      }
+      final char c = this.buffer[this.position++];
+      if (c == '"') {
+        return out.toString();
+      } else if (c == '\\') {
+        out.append(this.readEscape());
+      } else if (c < 0x20) {
+        this.position--;
+        throw this.error("Unescaped control character in string");
+      } else {
+        out.append(c);
+      }
+    }
+  }
+
+  private char readEscape() throws IOException {
+    if (this.position == this.limit && !this.fill()) {
+      throw this.error("Unterminated string");
+    }
+    final char c = this.buffer[this.position++];
+    switch (c) {
+      case '"': return '"';
+      case '\\': return '\\';
+      case '/': return '/';
+      case 'b': return '\b';
+      case 'f': return '\f';
+      case 'n': return '\n';
+      case 'r': return '\r';
+      case 't': return '\t';
+      case 'u':
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+          if (this.position == this.limit && !this.fill()) {
+            throw this.error("Unterminated string");
+          }
+          final int digit = Character.digit(this.buffer[this.position++], 16);
+          if (digit == -1) {
+            throw this.error("Invalid unicode escape");
+          }
+          value = value << 4 | digit;
+        }
+        return (char) value;
+      default:
+        throw this.error("Invalid escape '\\" + c + "'");
+    }
+  }
+
+  private Object readNumber() throws IOException {
+    final StringBuilder out = this.scratch;
+    out.setLength(0);
+    boolean decimal = false;
+    while (this.position < this.limit || this.fill()) {
+      final char c = this.buffer[this.position];
+      if (c >= '0' && c <= '9' || c == '-' || c == '+') {
+        out.append(c);
+      } else if (c == '.' || c == 'e' || c == 'E') {
+        out.append(c);
+        decimal = true;
+      } else {
+        break;
+      }
+      this.position++;
+    }
+
+    final String text = out.toString();
+    try {
+      if (decimal) {
+        return Double.parseDouble(text);
+      } else if (text.length() < 10) {
+        return Integer.parseInt(text);
+      } else if (text.length() < 19) {
+        return narrow(Long.parseLong(text));
+      }
+      final BigInteger big = new BigInteger(text);
+      return big.bitLength() < 64 ? narrow(big.longValue()) : big;
+    } catch (final NumberFormatException ex) {
+      throw this.error("Invalid number '" + text + "'");
+    }
+  }
+
+  private static Number narrow(final long value) {
+    return value == (int) value ? (Number) (int) value : (Number) value;
+  }
+
+  private void expectWord(final String word) throws IOException {
+    for (int i = 0; i < word.length(); i++) {
+      if ((this.position == this.limit && !this.fill()) || this.buffer[this.position] != word.charAt(i)) {
+        throw this.error("Unexpected value, expected '" + word + "'");
+      }
+      this.position++;
+    }
+  }
+
+  private void skipByteOrderMark() throws IOException {
+    if ((this.position < this.limit || this.fill()) && this.buffer[this.position] == '\uFEFF') {
+      this.position++;
+      this.lineStart = this.position;
+    }
+  }
+
+  /**
+   * Skip any whitespace.
+   *
+   * @return whether there is anything left to read
+   */
+  private boolean skipWhitespace() throws IOException {
+    while (this.position < this.limit || this.fill()) {
+      final char c = this.buffer[this.position];
+      if (c == '\n') {
+        this.line++;
+        this.lineStart = this.position + 1;
+      } else if (c != ' ' && c != '\t' && c != '\r') {
+        return true;
+      }
+      this.position++;
+    }
+    return false;
+  }
+
+  private int peekAfterWhitespace() throws IOException {
+    return this.skipWhitespace() ? this.buffer[this.position] : -1;
+  }
+
+  /**
+   * Refill the buffer once everything in it has been consumed.
+   *
+   * @return whether any more input was read
+   */
+  private boolean fill() throws IOException {
+    this.lineStart -= this.limit;
+    this.position = 0;
+    this.limit = 0;
+    int read;
+    while ((read = this.reader.read(this.buffer)) == 0) {
+      // keep trying until we get input or reach the end
+    }
+    if (read == -1) {
+      return false;
+    }
+    this.limit = read;
+    return true;
+  }
+
+  private InvalidUserDataException error(final String message) {
+    final int column = this.position - this.lineStart + 1;
+    return new InvalidUserDataException("Invalid input in " + this.label + " at line " + this.line + ", column " + column + ": " + message);
+  }
+}
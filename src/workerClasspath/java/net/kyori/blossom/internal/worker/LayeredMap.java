@@ -0,0 +1,204 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A map made up of several layers, where keys in earlier layers take priority over later ones.
+ *
+ * <p>Layers are never copied, so many maps can share the same underlying (possibly very large) layers while only
+ * holding their own differences. Writes go to a separate local layer owned by each map, leaving the shared layers untouched,
+ * so wrapping a shared map in a new layered map gives a cheap writable scope.</p>
+ *
+ * <p>Iteration merges the keys of every layer, so it is comparatively expensive, although values are only looked up as
+ * entries are read. Prefer {@link #get(Object)} and {@link #containsKey(Object)}.</p>
+ */
+final class LayeredMap extends AbstractMap<String, Object> {
+  private final List<Map<String, ?>> layers;
+  private @Nullable Map<String, Object> local;
+
+  /**
+   * Create a new layered map.
+   *
+   * @param layers the layers, in descending order of priority
+   */
+  @SafeVarargs
+  LayeredMap(final Map<String, ?>... layers) {
+    this(List.of(layers));
+  }
+
+  LayeredMap(final List<? extends Map<String, ?>> layers) {
+    this.layers = new ArrayList<>(layers.size());
+    for (final Map<String, ?> layer : layers) {
+      if (!layer.isEmpty()) {
+        this.layers.add(layer);
+      }
+    }
+  }
+
+  @Override
+  public @Nullable Object get(final Object key) {
+    final @Nullable Map<String, Object> local = this.local;
+    if (local != null && local.containsKey(key)) {
+      return local.get(key);
+    }
+    for (final Map<String, ?> layer : this.layers) {
+      final @Nullable Object value = layer.get(key);
+      if (value != null || layer.containsKey(key)) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    final @Nullable Map<String, Object> local = this.local;
+    if (local != null && local.containsKey(key)) {
+      return true;
+    }
+    for (final Map<String, ?> layer : this.layers) {
+      if (layer.containsKey(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public @Nullable Object put(final String key, final @Nullable Object value) {
+    final @Nullable Object previous = this.get(key);
+    if (this.local == null) {
+      this.local = new HashMap<>();
+    }
+    this.local.put(key, value);
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return this.keySet().size();
+  }
+
+  /**
+   * Get the keys of every layer, without looking at any values.
+   *
+   * <p>Layers may compute their values on demand, so merging keys is much cheaper than merging entries.</p>
+   *
+   * @return the merged keys
+   */
+  @Override
+  public Set<String> keySet() {
+    // keys keep the position of their first appearance, starting from the last layer
+    final Set<String> merged = new LinkedHashSet<>();
+    for (int i = this.layers.size() - 1; i >= 0; i--) {
+      merged.addAll(this.layers.get(i).keySet());
+    }
+    if (this.local != null) {
+      merged.addAll(this.local.keySet());
+    }
+    return Collections.unmodifiableSet(merged);
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    // values are only looked up as each entry is read
+    final Set<String> keys = this.keySet();
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        final Iterator<String> it = keys.iterator();
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return it.hasNext();
+          }
+
+          @Override
+          public Entry<String, Object> next() {
+            return new LayerEntry(it.next());
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return keys.size();
+      }
+    };
+  }
+
+  /**
+   * A read-only entry that resolves its value through the layers when asked for it.
+   */
+  private final class LayerEntry implements Entry<String, Object> {
+    private final String key;
+
+    LayerEntry(final String key) {
+      this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+      return this.key;
+    }
+
+    @Override
+    public @Nullable Object getValue() {
+      return LayeredMap.this.get(this.key);
+    }
+
+    @Override
+    public Object setValue(final Object value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) return true;
+      if (!(other instanceof Entry<?, ?>)) return false;
+      final Entry<?, ?> that = (Entry<?, ?>) other;
+      return this.key.equals(that.getKey()) && Objects.equals(this.getValue(), that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return this.key.hashCode() ^ Objects.hashCode(this.getValue());
+    }
+
+    @Override
+    public String toString() {
+      return this.key + "=" + this.getValue();
+    }
+  }
+}
@@ -0,0 +1,487 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable mapping read from a JSON object, where each value is only parsed the first time it is requested.
+ *
+ * <p>Creating the map only scans the object for its keys, skipping over their values by matching brackets and quotes.
+ * Large nested objects are indexed the same way when first requested, so only the parts of a data file that templates
+ * actually use are ever built. Since skipped values are not validated, syntax errors within them are reported when
+ * they are first requested rather than up front.</p>
+ *
+ * <p>Parsed values are kept, and parsing is synchronized per value, so a map can be shared between threads.</p>
+ */
+final class LazyDataMap extends AbstractMap<String, Object> {
+  // objects smaller than this are cheaper to parse directly
+  private static final int NESTED_INDEX_THRESHOLD = 16 * 1024;
+  private static final String VARIANTS_KEY = "variants";
+
+  private final Map<String, Slot> slots;
+  private @Nullable Set<Entry<String, Object>> entrySet;
+
+  private LazyDataMap(final Map<String, Slot> slots) {
+    this.slots = slots;
+  }
+
+  /**
+   * Read a JSON document, indexing its root object.
+   *
+   * <p>Documents with any other root value are parsed immediately.</p>
+   *
+   * @param contents the UTF-8 encoded document
+   * @param label a description of the source, for error messages
+   * @return the immutable value
+   * @throws IOException if unable to read the document
+   */
+  static @Nullable Object read(final byte[] contents, final String label) throws IOException {
+    final Scanner scanner = new Scanner(contents, 0, contents.length, label, 1);
+    scanner.skipByteOrderMark();
+    if (scanner.skipWhitespace() != '{') {
+      return parse(contents, 0, contents.length, label, 1);
+    }
+
+    final Map<String, Slot> slots = new LinkedHashMap<>();
+    scanner.indexObject(slots);
+    if (scanner.skipWhitespace() != -1) {
+      throw scanner.error("Unexpected content after the end of the document");
+    }
+    return new LazyDataMap(slots);
+  }
+
+  /**
+   * Read a JSON Lines document, indexing the object on every line.
+   *
+   * <p>Objects are merged into one mapping in the order they appear. Later lines replace the values of earlier lines,
+   * except for {@code variants} objects, which are merged by variant name.</p>
+   *
+   * @param contents the UTF-8 encoded document
+   * @param label a description of the source, for error messages
+   * @return the immutable merged mapping
+   */
+  static Map<String, Object> readLines(final byte[] contents, final String label) {
+    final Scanner scanner = new Scanner(contents, 0, contents.length, label, 1);
+    scanner.skipByteOrderMark();
+    final Map<String, Slot> slots = new LinkedHashMap<>();
+    final Map<String, Slot> lineSlots = new LinkedHashMap<>();
+    @Nullable List<Slot> variants = null;
+    int next;
+    while ((next = scanner.skipWhitespace()) != -1) {
+      if (next != '{') {
+        throw new InvalidUserDataException("Every line of " + label + " must hold an object, but line " + scanner.line + " did not");
+      }
+
+      lineSlots.clear();
+      scanner.indexObject(lineSlots);
+      for (final Map.Entry<String, Slot> entry : lineSlots.entrySet()) {
+        final Slot slot = entry.getValue();
+        if (VARIANTS_KEY.equals(entry.getKey()) && slot instanceof RangeSlot && ((RangeSlot) slot).isObject()) {
+          if (variants == null) {
+            variants = new ArrayList<>();
+            slots.put(VARIANTS_KEY, new MergedSlot(variants));
+          }
+          variants.add(slot);
+        } else {
+          if (VARIANTS_KEY.equals(entry.getKey())) {
+            variants = null;
+          }
+          slots.put(entry.getKey(), slot);
+        }
+      }
+    }
+    return new LazyDataMap(slots);
+  }
+
+  /**
+   * Get a view of this map without one of its keys, sharing any values that have already been parsed.
+   *
+   * @param key the key to leave out
+   * @return a map without the key
+   */
+  LazyDataMap without(final String key) {
+    if (!this.slots.containsKey(key)) {
+      return this;
+    }
+    final Map<String, Slot> slots = new LinkedHashMap<>(this.slots);
+    slots.remove(key);
+    return new LazyDataMap(slots);
+  }
+
+  @Override
+  public @Nullable Object get(final Object key) {
+    final @Nullable Slot slot = this.slots.get(key);
+    return slot == null ? null : slot.value();
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return this.slots.containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return this.slots.size();
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return Collections.unmodifiableSet(this.slots.keySet());
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    if (this.entrySet == null) {
+      this.entrySet = new AbstractSet<>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          final Iterator<Entry<String, Slot>> slots = LazyDataMap.this.slots.entrySet().iterator();
+          return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+              return slots.hasNext();
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              return new LazyEntry(slots.next());
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return LazyDataMap.this.slots.size();
+        }
+      };
+    }
+    return this.entrySet;
+  }
+
+  private static @Nullable Object parse(final byte[] contents, final int start, final int end, final String label, final int line) throws IOException {
+    try (final Reader reader = new InputStreamReader(new ByteArrayInputStream(contents, start, end - start), StandardCharsets.UTF_8)) {
+      return JsonDataReader.read(reader, label, line);
+    }
+  }
+
+  /**
+   * An entry that only parses its value when asked for it.
+   */
+  private static final class LazyEntry implements Entry<String, Object> {
+    private final Entry<String, Slot> slot;
+
+    LazyEntry(final Entry<String, Slot> slot) {
+      this.slot = slot;
+    }
+
+    @Override
+    public String getKey() {
+      return this.slot.getKey();
+    }
+
+    @Override
+    public @Nullable Object getValue() {
+      return this.slot.getValue().value();
+    }
+
+    @Override
+    public Object setValue(final Object value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) return true;
+      if (!(other instanceof Entry<?, ?>)) return false;
+      final Entry<?, ?> that = (Entry<?, ?>) other;
+      return Objects.equals(this.getKey(), that.getKey()) && Objects.equals(this.getValue(), that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(this.getKey()) ^ Objects.hashCode(this.getValue());
+    }
+
+    @Override
+    public String toString() {
+      return this.getKey() + "=" + this.getValue();
+    }
+  }
+
+  /**
+   * A value that is computed once, on first access.
+   */
+  private abstract static class Slot {
+    private volatile boolean computed;
+    private @Nullable Object value;
+
+    final @Nullable Object value() {
+      if (!this.computed) {
+        synchronized (this) {
+          if (!this.computed) {
+            this.value = this.compute();
+            this.computed = true;
+          }
+        }
+      }
+      return this.value;
+    }
+
+    abstract @Nullable Object compute();
+  }
+
+  /**
+   * A value stored in a range of the source document.
+   */
+  private static final class RangeSlot extends Slot {
+    private final byte[] contents;
+    private final int start;
+    private final int end;
+    private final String label;
+    private final int line;
+
+    RangeSlot(final byte[] contents, final int start, final int end, final String label, final int line) {
+      this.contents = contents;
+      this.start = start;
+      this.end = end;
+      this.label = label;
+      this.line = line;
+    }
+
+    boolean isObject() {
+      return this.contents[this.start] == '{';
+    }
+
+    @Override
+    @Nullable Object compute() {
+      if (this.isObject() && this.end - this.start > NESTED_INDEX_THRESHOLD) {
+        final Map<String, Slot> slots = new LinkedHashMap<>();
+        new Scanner(this.contents, this.start, this.end, this.label, this.line).indexObject(slots);
+        return new LazyDataMap(slots);
+      }
+
+      try {
+        return parse(this.contents, this.start, this.end, this.label, this.line);
+      } catch (final IOException ex) {
+        throw new GradleException("Failed to read data from " + this.label, ex);
+      }
+    }
+  }
+
+  /**
+   * The {@code variants} objects from every line of a JSON Lines document, merged by variant name.
+   */
+  private static final class MergedSlot extends Slot {
+    private final List<Slot> parts;
+
+    MergedSlot(final List<Slot> parts) {
+      this.parts = parts;
+    }
+
+    @Override
+    Object compute() {
+      final Map<Object, Object> ret = new LinkedHashMap<>();
+      for (final Slot part : this.parts) {
+        ret.putAll((Map<?, ?>) part.value());
+      }
+      return Collections.unmodifiableMap(ret);
+    }
+  }
+
+  /**
+   * Finds the keys of an object and the ranges of their values, working directly on UTF-8 encoded bytes.
+   *
+   * <p>Every byte of a multibyte UTF-8 sequence is outside the ASCII range, so brackets, quotes and escapes can all be
+   * matched without decoding.</p>
+   */
+  private static final class Scanner {
+    private final byte[] contents;
+    private final int end;
+    private final String label;
+    private int position;
+    int line;
+
+    Scanner(final byte[] contents, final int start, final int end, final String label, final int line) {
+      this.contents = contents;
+      this.position = start;
+      this.end = end;
+      this.label = label;
+      this.line = line;
+    }
+
+    void skipByteOrderMark() {
+      if (this.end - this.position >= 3
+        && this.contents[this.position] == (byte) 0xef
+        && this.contents[this.position + 1] == (byte) 0xbb
+        && this.contents[this.position + 2] == (byte) 0xbf) {
+        this.position += 3;
+      }
+    }
+
+    /**
+     * Skip any whitespace.
+     *
+     * @return the next character, or {@code -1} at the end of input
+     */
+    int skipWhitespace() {
+      while (this.position < this.end) {
+        final byte b = this.contents[this.position];
+        if (b == '\n') {
+          this.line++;
+        } else if (b != ' ' && b != '\t' && b != '\r') {
+          return b;
+        }
+        this.position++;
+      }
+      return -1;
+    }
+
+    // called with the opening brace as the next character
+    void indexObject(final Map<String, Slot> slots) {
+      this.position++;
+      if (this.skipWhitespace() == '}') {
+        this.position++;
+        return;
+      }
+      while (true) {
+        if (this.skipWhitespace() != '"') {
+          throw this.error("Expected an object key");
+        }
+        final String key = this.readKey();
+        if (this.skipWhitespace() != ':') {
+          throw this.error("Expected ':' after object key");
+        }
+        this.position++;
+        if (this.skipWhitespace() == -1) {
+          throw this.error("Unexpected end of input");
+        }
+        final int valueLine = this.line;
+        final int valueStart = this.position;
+        this.skipValue();
+        slots.put(key, new RangeSlot(this.contents, valueStart, this.position, this.label, valueLine));
+
+        final int next = this.skipWhitespace();
+        if (next == '}') {
+          this.position++;
+          return;
+        } else if (next != ',') {
+          throw this.error("Expected ',' or '}' in object");
+        }
+        this.position++;
+      }
+    }
+
+    private String readKey() {
+      final int start = this.position;
+      final boolean escaped = this.skipString();
+      if (!escaped) {
+        return new String(this.contents, start + 1, this.position - start - 2, StandardCharsets.UTF_8);
+      }
+      try {
+        return (String) parse(this.contents, start, this.position, this.label, this.line);
+      } catch (final IOException ex) {
+        throw new GradleException("Failed to read data from " + this.label, ex);
+      }
+    }
+
+    /**
+     * Skip a string, starting from its opening quote.
+     *
+     * @return whether the string contained any escapes
+     */
+    private boolean skipString() {
+      boolean escaped = false;
+      for (int i = this.position + 1; i < this.end; i++) {
+        final byte b = this.contents[i];
+        if (b == '"') {
+          this.position = i + 1;
+          return escaped;
+        } else if (b == '\\') {
+          escaped = true;
+          i++;
+        } else if (b == '\n') {
+          break;
+        }
+      }
+      throw this.error("Unterminated string");
+    }
+
+    private void skipValue() {
+      final byte first = this.contents[this.position];
+      if (first == '"') {
+        this.skipString();
+        return;
+      } else if (first != '{' && first != '[') {
+        // a scalar, which continues until the next delimiter
+        while (this.position < this.end) {
+          final byte b = this.contents[this.position];
+          if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+            break;
+          }
+          this.position++;
+        }
+        return;
+      }
+
+      int depth = 0;
+      while (this.position < this.end) {
+        final byte b = this.contents[this.position];
+        if (b == '"') {
+          this.skipString();
+          continue;
+        } else if (b == '{' || b == '[') {
+          depth++;
+        } else if (b == '}' || b == ']') {
+          if (--depth == 0) {
+            this.position++;
+            return;
+          }
+        } else if (b == '\n') {
+          this.line++;
+        }
+        this.position++;
+      }
+      throw this.error("Unexpected end of input");
+    }
+
+    InvalidUserDataException error(final String message) {
+      return new InvalidUserDataException("Invalid input in " + this.label + " at line " + this.line + ": " + message);
+    }
+  }
+}
@@ -26,43 +26,135 @@ import io.pebbletemplates.pebble.utils.PathUtils;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import org.gradle.api.GradleException;
 import org.jetbrains.annotations.Nullable;
 
-final class MultiDirectoryLoader implements Loader<String> {
+/**
+ * A loader that resolves templates from several directories, with directories earlier in the list taking priority.
+ *
+ * <p>Rather than probing every directory for each lookup, the directories are walked once to build an index of template names,
+ * and template sources are read and decoded once, then served from memory. Cache keys include a hash of the template's contents,
+ * so that parsed templates can be kept across generation runs without going stale. The index, sources and keys are computed once
+ * per generation run, until {@link #invalidate()} is called.</p>
+ *
+ * <p>Loaders are safe to share between rendering threads.</p>
+ */
+final class MultiDirectoryLoader implements Loader<MultiDirectoryLoader.TemplateKey> {
+  static final Charset CHARSET = StandardCharsets.UTF_8;
+  private static final String PEBBLE_EXTENSION = ".peb";
+  // files larger than this are mapped rather than copied onto the heap before decoding
+  private static final long MAP_THRESHOLD = 256 * 1024;
+
   private final List<Path> directories;
   private final Charset charset;
+  private volatile @Nullable Index index;
+  private final Map<String, TemplateKey> keys = new ConcurrentHashMap<>();
+  private final Map<TemplateKey, String> sources = new ConcurrentHashMap<>();
 
   MultiDirectoryLoader(final List<Path> directories, final Charset charset) {
     this.directories = List.copyOf(directories);
     this.charset = charset;
   }
 
+  /**
+   * Forget any indexed files, sources and computed cache keys, so that changes to template files since they were last
+   * looked up are taken into account.
+   */
+  void invalidate() {
+    this.index = null;
+    this.keys.clear();
+    this.sources.clear();
+  }
+
+  /**
+   * Get the names of every template within the provided directories, whether or not they are overridden by another directory.
+   *
+   * @param directories the directories, which must be known to this loader
+   * @return the template names, relative to their directory
+   */
+  Set<String> templateNames(final Collection<Path> directories) {
+    final Index index = this.index();
+    final Set<String> ret = new HashSet<>();
+    for (final Path directory : directories) {
+      ret.addAll(index.namesByDirectory.getOrDefault(directory, Set.of()));
+    }
+    return ret;
+  }
+
+  /**
+   * Open a reader for the named template.
+   *
+   * @param templateName the template name
+   * @return a reader for the template's contents
+   */
+  Reader getReader(final String templateName) {
+    return this.getReader(this.createCacheKey(templateName));
+  }
+
   @Override
-  public Reader getReader(final String templateName) {
-    final Path file = this.findFile(templateName);
-    if (file != null) {
-      try {
-        return Files.newBufferedReader(file, this.charset);
-      } catch (final IOException ex) {
-        throw new LoaderException(ex, "Could not load template \"" + templateName + "\" from file \"" + file + "\"");
+  public Reader getReader(final TemplateKey key) {
+    if (key.file != null) {
+      final @Nullable String source = this.sources.get(key);
+      if (source != null) {
+        return new StringReader(source);
       }
+      // the source was invalidated since this key was created, so read it again
+      return new StringReader(this.read(key.name, key.file).source);
     }
-    throw new LoaderException(null, "Could not find template \"" + templateName + "\" in any of: " + this.directories.stream().map(Path::toString).collect(Collectors.joining("; ")));
+    throw new LoaderException(null, "Could not find template \"" + key.name + "\" in any of: " + this.directories.stream().map(Path::toString).collect(Collectors.joining("; ")));
   }
 
   private @Nullable Path findFile(final String templateName) {
-    for (final Path path : this.directories) {
-      @Nullable Path file = findFileIn(templateName, path);
-
-      if (file == null && !templateName.endsWith(".peb")) {
-        file = findFileIn(templateName + ".peb", path);
+    final Index index = this.index();
+    final String name;
+    try {
+      name = normalize(templateName);
+    } catch (final InvalidPathException ex) {
+      return null;
+    }
+    if (index.isWithinLinkedDirectory(name)) {
+      // the walk does not descend into linked directories, so look on disk instead
+      return this.probeFile(name);
+    }
+    @Nullable IndexedFile file = index.files.get(name);
+    if (!name.endsWith(PEBBLE_EXTENSION)) {
+      // the first directory containing either spelling wins, preferring the exact name within a directory
+      final @Nullable IndexedFile withExtension = index.files.get(name + PEBBLE_EXTENSION);
+      if (withExtension != null && (file == null || withExtension.directory < file.directory)) {
+        file = withExtension;
       }
+    }
+    return file == null ? null : file.path;
+  }
 
+  private @Nullable Path probeFile(final String name) {
+    for (final Path directory : this.directories) {
+      @Nullable Path file = probeFileIn(name, directory);
+      if (file == null && !name.endsWith(PEBBLE_EXTENSION)) {
+        file = probeFileIn(name + PEBBLE_EXTENSION, directory);
+      }
       if (file != null) {
         return file;
       }
@@ -70,14 +162,54 @@ final class MultiDirectoryLoader implements Loader<String> {
     return null;
   }
 
-  private static @Nullable Path findFileIn(final String templateName, final Path path) {
-    final Path file = path.resolve(templateName);
-    if (Files.isRegularFile(file)
-      // guard against escaping the directory
-      && file.toAbsolutePath().startsWith(path.toAbsolutePath())) {
-      return file;
+  private static @Nullable Path probeFileIn(final String name, final Path directory) {
+    final Path file = directory.resolve(name);
+    return Files.isRegularFile(file) ? file : null;
+  }
+
+  private static String normalize(final String templateName) {
+    // this also prevents names from escaping their directory, since every indexed name is within a directory
+    final String normalized = Path.of(templateName).normalize().toString();
+    return File.separatorChar == '/' ? normalized : normalized.replace(File.separatorChar, '/');
+  }
+
+  private Index index() {
+    @Nullable Index index = this.index;
+    if (index == null) {
+      synchronized (this) {
+        index = this.index;
+        if (index == null) {
+          this.index = index = Index.build(this.directories);
+        }
+      }
+    }
+    return index;
+  }
+
+  private Source read(final String templateName, final Path file) {
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      final ByteBuffer contents;
+      if (size > MAP_THRESHOLD) {
+        contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        contents = ByteBuffer.allocate((int) size);
+        while (contents.hasRemaining() && channel.read(contents) != -1) {
+          // keep reading
+        }
+        contents.flip();
+      }
+
+      final String hash = ContentHash.of(contents.duplicate());
+      final String source = this.charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT)
+        .decode(contents)
+        .toString();
+      return new Source(size, hash, source);
+    } catch (final IOException ex) {
+      throw new LoaderException(ex, "Could not load template \"" + templateName + "\" from file \"" + file + "\"");
     }
-    return null;
   }
 
   @Override
@@ -101,13 +233,161 @@ final class MultiDirectoryLoader implements Loader<String> {
   }
 
   @Override
-  public String createCacheKey(final String templateName) {
-    return templateName;
+  public TemplateKey createCacheKey(final String templateName) {
+    return this.keys.computeIfAbsent(templateName, this::makeKey);
+  }
+
+  private TemplateKey makeKey(final String templateName) {
+    final WorkerEvents.@Nullable LoaderLookup event = WorkerEvents.enabled() ? new WorkerEvents.LoaderLookup() : null;
+    if (event != null) {
+      event.begin();
+      event.template = templateName;
+    }
+    final @Nullable Path file = this.findFile(templateName);
+    if (file == null) {
+      if (event != null) {
+        event.commit();
+      }
+      return new TemplateKey(templateName, null, 0, "");
+    }
+
+    final Source source = this.read(templateName, file);
+    final TemplateKey key = new TemplateKey(templateName, file, source.size, source.hash);
+    this.sources.put(key, source.source);
+    if (event != null) {
+      event.found = true;
+      event.commit();
+    }
+    return key;
   }
 
   @Override
   public boolean resourceExists(final String templateName) {
-    final Path path = this.findFile(templateName);
-    return path != null && Files.isRegularFile(path);
+    return this.createCacheKey(templateName).file != null;
+  }
+
+  static final class Source {
+    final long size;
+    final String hash;
+    final String source;
+
+    Source(final long size, final String hash, final String source) {
+      this.size = size;
+      this.hash = hash;
+      this.source = source;
+    }
+  }
+
+  /**
+   * The result of walking every template directory.
+   */
+  static final class Index {
+    final Map<String, IndexedFile> files;
+    final Map<Path, Set<String>> namesByDirectory;
+    // symbolic links to directories, which are not walked
+    final Set<String> linkedDirectories;
+
+    private Index(final Map<String, IndexedFile> files, final Map<Path, Set<String>> namesByDirectory, final Set<String> linkedDirectories) {
+      this.files = files;
+      this.namesByDirectory = namesByDirectory;
+      this.linkedDirectories = linkedDirectories;
+    }
+
+    boolean isWithinLinkedDirectory(final String name) {
+      if (this.linkedDirectories.isEmpty()) {
+        return false;
+      }
+      for (int slash = name.indexOf('/'); slash != -1; slash = name.indexOf('/', slash + 1)) {
+        if (this.linkedDirectories.contains(name.substring(0, slash))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    static Index build(final List<Path> directories) {
+      final Map<String, IndexedFile> files = new HashMap<>();
+      final Map<Path, Set<String>> namesByDirectory = new HashMap<>();
+      final Set<String> linkedDirectories = new HashSet<>();
+      for (int i = 0; i < directories.size(); i++) {
+        final Path directory = directories.get(i);
+        final int directoryIndex = i;
+        final Set<String> names = new HashSet<>();
+        try {
+          Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+              final String name = directory.relativize(file).toString();
+              final String normalized = File.separatorChar == '/' ? name : name.replace(File.separatorChar, '/');
+              if (attrs.isSymbolicLink() && Files.isDirectory(file)) {
+                linkedDirectories.add(normalized);
+              } else if (attrs.isRegularFile() || Files.isRegularFile(file)) {
+                names.add(name);
+                // earlier directories take priority
+                files.putIfAbsent(normalized, new IndexedFile(file, directoryIndex));
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+              // missing directories
+              return FileVisitResult.CONTINUE;
+            }
+          });
+        } catch (final IOException ex) {
+          throw new GradleException("Exception encountered when gathering template names in directory '" + directory + "'", ex);
+        }
+        namesByDirectory.put(directory, Set.copyOf(names));
+      }
+      return new Index(files, namesByDirectory, linkedDirectories);
+    }
+  }
+
+  static final class IndexedFile {
+    final Path path;
+    final int directory; // position in the loader's directories, lower wins
+
+    IndexedFile(final Path path, final int directory) {
+      this.path = path;
+      this.directory = directory;
+    }
+  }
+
+  /**
+   * A key identifying one version of a template.
+   */
+  static final class TemplateKey {
+    final String name;
+    final @Nullable Path file;
+    final long size;
+    final String hash;
+
+    TemplateKey(final String name, final @Nullable Path file, final long size, final String hash) {
+      this.name = name;
+      this.file = file;
+      this.size = size;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) return true;
+      if (!(other instanceof TemplateKey)) return false;
+      final TemplateKey that = (TemplateKey) other;
+      return this.name.equals(that.name)
+        && Objects.equals(this.file, that.file)
+        && this.hash.equals(that.hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.name, this.file, this.hash);
+    }
+
+    @Override
+    public String toString() {
+      return this.name;
+    }
   }
 }
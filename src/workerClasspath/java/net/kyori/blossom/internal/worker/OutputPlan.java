@@ -0,0 +1,122 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.gradle.api.InvalidUserDataException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Works out where the output of every combination of template and variant will go, before anything is rendered.
+ *
+ * <p>Most template file names contain no Pebble syntax at all, so they're used as-is without going through Pebble.
+ * The rest are evaluated by a separate engine that only knows about file names.</p>
+ */
+final class OutputPlan {
+  private static final String PEBBLE_EXTENSION = ".peb";
+  private static final int MAX_REPORTED_COLLISIONS = 50;
+
+  private OutputPlan() {
+  }
+
+  /**
+   * Plan the outputs of several templates.
+   *
+   * @param nameEngine the engine to evaluate templated file names with
+   * @param templates the templates to plan, in the order they should be rendered
+   * @param variants the data for each variant, which is only iterated once
+   * @param manifest a manifest containing any outputs that are kept from a previous run, which planned outputs will be added to
+   * @return the planned outputs
+   * @throws InvalidUserDataException if any two outputs share a path
+   * @throws IOException if unable to evaluate a file name
+   */
+  static List<RenderUnit> create(
+    final PebbleEngine nameEngine,
+    final Collection<String> templates,
+    final Iterable<Map<String, Object>> variants,
+    final OutputManifest manifest
+  ) throws IOException {
+    final Map<String, String> seenOutputs = new HashMap<>();
+    for (final String template : manifest.templates()) {
+      for (final String output : manifest.outputs(template)) {
+        seenOutputs.put(output, "template " + template);
+      }
+    }
+
+    // matrix variants are created while iterating, so expand each one once and share it between every template's units
+    final List<Map<String, Object>> expanded = new ArrayList<>();
+    for (final Map<String, Object> variant : variants) {
+      expanded.add(variant);
+    }
+
+    final List<RenderUnit> units = new ArrayList<>(templates.size() * expanded.size());
+    final List<String> collisions = new ArrayList<>();
+    for (final String template : templates) {
+      final @Nullable PebbleTemplate nameTemplate = isTemplated(template) ? nameEngine.getLiteralTemplate(template) : null;
+      for (final Map<String, Object> variant : expanded) {
+        final String output = stripExtension(nameTemplate == null ? template : evaluate(nameTemplate, variant));
+        final RenderUnit unit = new RenderUnit(template, variant, output);
+        final @Nullable String existing = seenOutputs.putIfAbsent(output, unit.describe());
+        if (existing != null) {
+          collisions.add("Output file " + output + " (" + unit.describe() + ") has already been written by " + existing);
+          continue;
+        }
+        manifest.put(template, output);
+        units.add(unit);
+      }
+    }
+
+    if (!collisions.isEmpty()) {
+      final StringBuilder message = new StringBuilder("Multiple templates produced the same output:");
+      for (int i = 0; i < Math.min(collisions.size(), MAX_REPORTED_COLLISIONS); i++) {
+        message.append(System.lineSeparator()).append("- ").append(collisions.get(i));
+      }
+      if (collisions.size() > MAX_REPORTED_COLLISIONS) {
+        message.append(System.lineSeparator()).append("... and ").append(collisions.size() - MAX_REPORTED_COLLISIONS).append(" more");
+      }
+      throw new InvalidUserDataException(message.toString());
+    }
+    return units;
+  }
+
+  static boolean isTemplated(final String fileName) {
+    return fileName.contains("{{") || fileName.contains("{%") || fileName.contains("{#");
+  }
+
+  private static String stripExtension(final String fileName) {
+    return fileName.endsWith(PEBBLE_EXTENSION) ? fileName.substring(0, fileName.length() - PEBBLE_EXTENSION.length()) : fileName;
+  }
+
+  private static String evaluate(final PebbleTemplate template, final Map<String, Object> variant) throws IOException {
+    final StringWriter writer = new StringWriter();
+    // variant data is shared between renders, so give each evaluation its own scope for any variables it sets
+    template.evaluate(writer, new LayeredMap(variant));
+    return writer.toString();
+  }
+}
@@ -20,105 +20,177 @@
  */
 package net.kyori.blossom.internal.worker;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
-import org.snakeyaml.engine.v2.api.Load;
-import org.snakeyaml.engine.v2.api.LoadSettings;
-import org.snakeyaml.engine.v2.exceptions.YamlEngineException;
+import org.jetbrains.annotations.Nullable;
 
 final class PropertyFileIO {
 
   private PropertyFileIO() {
   }
 
-  public static Set<Map<String, Object>> prepareDataForGeneration(
+  /**
+   * Compute the data available to templates for each variant.
+   *
+   * <p>Each variant's data is layered on top of the global data rather than copied from it, so large global data is only held once.
+   * Declared variants come first, ordered by name, followed by variants from the variant matrix, which are only created
+   * while iterating.</p>
+   *
+   * @param globalParams the parameters for the whole template set
+   * @param variantParams the parameters for each declared variant
+   * @param variantMatrix the variant matrix
+   * @return the data for each variant
+   */
+  public static Iterable<Map<String, Object>> prepareDataForGeneration(
     final TemplateParams globalParams,
-    final Set<TemplateParams> variantParams
+    final Set<TemplateParams> variantParams,
+    final VariantMatrixSpec variantMatrix
   ) {
-    final Map<String, Map<String, Object>> configData = loadConfig(globalParams.name(), globalParams.files(), !variantParams.isEmpty());
-    if (variantParams.isEmpty()) {
+    // parse every data file up front, so they can be read in parallel
+    final Set<Path> allFiles = new LinkedHashSet<>(globalParams.files());
+    for (final TemplateParams variant : variantParams) {
+      allFiles.addAll(variant.files());
+    }
+    allFiles.removeIf(file -> !Files.isRegularFile(file));
+    final Map<Path, Object> parsed = DataFileCache.preload(allFiles);
+
+    final boolean useVariants = !variantParams.isEmpty() || !variantMatrix.isEmpty();
+    final Map<String, Map<String, Object>> configData = loadConfig(globalParams.name(), globalParams.files(), parsed, useVariants);
+
+    // figure out any global data: in-memory properties take priority over files
+    final Map<String, Object> fromGlobalFile = configData.remove(null);
+    final Map<String, Object> global = fromGlobalFile == null
+      ? new LayeredMap(globalParams.data())
+      : new LayeredMap(globalParams.data(), fromGlobalFile);
+    if (!useVariants) {
       // non-variant mode
-      final Map<String, Object> result = configData.get(null);
-      if (result == null) {
-        return Set.of(globalParams.data());
-      } else {
-        result.putAll(globalParams.data());
-        return Collections.singleton(result);
-      }
-    } else {
-      // figure out any global data
-      Map<String, Object> global = configData.remove(null);
-      if (global == null) {
-        global = globalParams.data();
-      } else {
-        global.putAll(globalParams.data());
-      }
-      final Set<Map<String, Object>> output = new HashSet<>();
-      // then get the per-variant bits
-      for (final TemplateParams variant : variantParams) {
-        final Map<String, Object> variantData = new LinkedHashMap<>();
+      return List.of(global);
+    }
 
-        // defaults
-        variantData.put("variant", variant.name());
+    final List<TemplateParams> sortedVariants = new ArrayList<>(variantParams);
+    sortedVariants.sort(Comparator.comparing(TemplateParams::name));
+    final List<Map<String, Object>> output = new ArrayList<>(sortedVariants.size());
+    // then get the per-variant bits
+    for (final TemplateParams variant : sortedVariants) {
+      final List<Map<String, ?>> layers = new ArrayList<>(5);
 
-        // global, from file
-        variantData.putAll(global);
+      // variant, in-memory
+      layers.add(variant.data());
 
-        // variant, from global files
-        final Map<String, Object> variantFromGlobalFile = configData.remove(variant.name());
-        if (variantFromGlobalFile != null) {
-          variantData.putAll(variantFromGlobalFile);
-        }
+      // variant, from variant files
+      final Map<String, Object> variantFromFile = loadConfig(globalParams.name(), variant.files(), parsed, false).get(null);
+      if (variantFromFile != null) {
+        layers.add(variantFromFile);
+      }
 
-        // variant, from variant files
-        final Map<String, Object> variantFromFile = loadConfig(globalParams.name(), variant.files(), false).get(null);
-        if (variantFromFile != null) {
-          variantData.putAll(variantFromFile);
-        }
+      // variant, from global files
+      final Map<String, Object> variantFromGlobalFile = configData.remove(variant.name());
+      if (variantFromGlobalFile != null) {
+        layers.add(variantFromGlobalFile);
+      }
 
-        // variant, in-memory
-        variantData.putAll(variant.data());
+      // global, shared between every variant
+      layers.add(global);
 
-        output.add(variantData);
-      }
+      // defaults
+      layers.add(Map.of("variant", variant.name()));
+
+      output.add(new LayeredMap(layers));
+    }
 
+    if (variantMatrix.isEmpty()) {
       if (!configData.isEmpty()) {
         throw new InvalidUserDataException("Unknown variants declared in file for template set " + globalParams.name() + ": " + configData.keySet());
       }
-
       return output;
     }
-  }
 
-  private static Map<String, Map<String, Object>> loadConfig(final String templateSetName, final Set<Path> files, final boolean useVariants) {
-    final LoadSettings settings = LoadSettings.builder()
-      .setLabel("Template set " + templateSetName)
-      .build();
-    final Load load = new Load(settings);
+    // validate matrix names without keeping any combinations around
+    final Set<String> names = new HashSet<>();
+    for (final TemplateParams variant : variantParams) {
+      names.add(variant.name());
+    }
+    final Set<String> unknownVariants = new HashSet<>(configData.keySet());
+    for (final Map<String, String> combination : variantMatrix) {
+      final String name = variantMatrix.nameOf(combination);
+      if (!names.add(name)) {
+        throw new InvalidUserDataException("Variant matrix combination " + combination + " in template set " + globalParams.name() + " produces a variant named '" + name + "', which already exists");
+      }
+      unknownVariants.remove(name);
+    }
+    if (!unknownVariants.isEmpty()) {
+      throw new InvalidUserDataException("Unknown variants declared in file for template set " + globalParams.name() + ": " + unknownVariants);
+    }
+
+    final Iterable<Map<String, Object>> matrixVariants = () -> new Iterator<>() {
+      private final Iterator<Map<String, String>> combinations = variantMatrix.iterator();
+
+      @Override
+      public boolean hasNext() {
+        return this.combinations.hasNext();
+      }
+
+      @Override
+      public Map<String, Object> next() {
+        final Map<String, String> combination = this.combinations.next();
+        final String name = variantMatrix.nameOf(combination);
+        final List<Map<String, ?>> layers = new ArrayList<>(4);
+        // axis values, then global data
+        layers.add(combination);
+        final Map<String, Object> variantFromGlobalFile = configData.get(name);
+        if (variantFromGlobalFile != null) {
+          layers.add(variantFromGlobalFile);
+        }
+        layers.add(global);
+        layers.add(Map.of("variant", name));
+        return new LayeredMap(layers);
+      }
+    };
+    return () -> new Iterator<>() {
+      private final Iterator<Map<String, Object>> declared = output.iterator();
+      private final Iterator<Map<String, Object>> matrix = matrixVariants.iterator();
+
+      @Override
+      public boolean hasNext() {
+        return this.declared.hasNext() || this.matrix.hasNext();
+      }
 
+      @Override
+      public Map<String, Object> next() {
+        return this.declared.hasNext() ? this.declared.next() : this.matrix.next();
+      }
+    };
+  }
+
+  private static Map<String, Map<String, Object>> loadConfig(
+    final String templateSetName,
+    final Set<Path> files,
+    final Map<Path, Object> parsed,
+    final boolean useVariants
+  ) {
     final Map<String, Map<String, Object>> templateParams = new HashMap<>();
     for (final Path file : files) {
-      if (!Files.isRegularFile(file)) {
+      // files that weren't there were never parsed
+      if (!parsed.containsKey(file)) {
         continue;
       }
-      try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
-        final Object data = load.loadFromReader(reader);
+      // parsed data is shared, so it is copied rather than modified
+      final Object data = parsed.get(file);
+      try {
         unmarshalData(templateParams, data, useVariants);
-      } catch (final YamlEngineException ex) {
-        throw new InvalidUserDataException("Invalid input in " + file, ex);
-      } catch (final IOException ex) {
-        throw new GradleException("Failed to load data from " + file, ex);
+      } catch (final InvalidUserDataException ex) {
+        throw new InvalidUserDataException("Invalid data for template set " + templateSetName + " in " + file + ": " + ex.getMessage(), ex);
       }
     }
     return templateParams;
@@ -131,7 +203,7 @@ final class PropertyFileIO {
 
     final Map<?, ?> dataMap = (Map<?, ?>) data;
     if (useVariants) {
-      final Object variants = dataMap.remove("variants");
+      final Object variants = dataMap.get("variants");
       if (variants != null) {
         if (!(variants instanceof Map<?, ?>)) {
           throw new InvalidUserDataException("value of 'variants' entry must be a mapping of String to Map<String, Object>");
@@ -146,12 +218,22 @@ final class PropertyFileIO {
       }
     }
 
-    output.put(null, makeStringKeys((Map<?, ?>) data));
+    output.put(null, makeStringKeys(dataMap, useVariants ? "variants" : null));
   }
 
   private static Map<String, Object> makeStringKeys(final Map<?, ?> map) {
+    return makeStringKeys(map, null);
+  }
+
+  private static Map<String, Object> makeStringKeys(final Map<?, ?> map, final @Nullable String excludedKey) {
+    if (map instanceof LazyDataMap) {
+      // keys are already strings, and copying would parse every value
+      return excludedKey == null ? (LazyDataMap) map : ((LazyDataMap) map).without(excludedKey);
+    }
+
     final Map<String, Object> ret = new LinkedHashMap<>();
     for (final Map.Entry<?, ?> entry : map.entrySet()) {
+      if (excludedKey != null && excludedKey.equals(entry.getKey())) continue;
       ret.put(entry.getKey() == null ? null : entry.getKey().toString(), entry.getValue());
     }
     return ret;
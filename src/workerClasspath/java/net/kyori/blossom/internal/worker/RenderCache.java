@@ -0,0 +1,113 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An on-disk cache of rendered template outputs, which can be shared between builds and projects.
+ *
+ * <p>Entries are keyed by the {@link InputFingerprints fingerprint} of everything that can influence the output. Entries are written to a temporary file and then
+ * moved into place, so concurrent readers will only ever see complete entries, and concurrent writers of the same entry will
+ * always be writing the same contents.</p>
+ */
+final class RenderCache {
+  private static final Logger LOGGER = Logging.getLogger(RenderCache.class);
+  // bump when changing the entry format
+  private static final String FORMAT_VERSION = "v2";
+
+  private final Path directory;
+  private final InputFingerprints fingerprints;
+
+  RenderCache(final Path directory, final InputFingerprints fingerprints) {
+    this.directory = directory.resolve(FORMAT_VERSION);
+    this.fingerprints = fingerprints;
+  }
+
+  /**
+   * Compute the cache key for one output.
+   *
+   * @param template the template name
+   * @param variant the variant data
+   * @return the cache key
+   */
+  String key(final String template, final Map<String, Object> variant) {
+    return this.fingerprints.of(template, variant);
+  }
+
+  /**
+   * Get the cached contents for a key.
+   *
+   * @param key the key
+   * @return the cached contents, or {@code null} if not present
+   */
+  @Nullable byte[] get(final String key) {
+    try {
+      return Files.readAllBytes(this.entry(key));
+    } catch (final NoSuchFileException ex) {
+      return null;
+    } catch (final IOException ex) {
+      LOGGER.info("Failed to read render cache entry {}", key, ex);
+      return null;
+    }
+  }
+
+  /**
+   * Store contents in the cache.
+   *
+   * <p>Failure to write is not fatal, the output will just be rendered again next time.</p>
+   *
+   * @param key the key
+   * @param contents the rendered contents
+   */
+  void put(final String key, final byte[] contents) {
+    final Path entry = this.entry(key);
+    try {
+      Files.createDirectories(entry.getParent());
+      final Path temp = Files.createTempFile(entry.getParent(), key, ".tmp");
+      try {
+        Files.write(temp, contents);
+        try {
+          Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+          Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (final IOException ex) {
+      LOGGER.info("Failed to write render cache entry {}", key, ex);
+    }
+  }
+
+  private Path entry(final String key) {
+    return this.directory.resolve(key.substring(0, 2)).resolve(key);
+  }
+}
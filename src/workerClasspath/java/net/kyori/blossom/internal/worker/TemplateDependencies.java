@@ -0,0 +1,194 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.gradle.api.GradleException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A graph of the references between templates, as declared by {@code include}, {@code import}, {@code from}, {@code embed} and {@code extends} tags.
+ *
+ * <p>References are discovered by scanning template sources rather than by parsing them, so this is a conservative approximation:
+ * any template that refers to another template through an expression we can't evaluate statically is considered to depend on
+ * every other template.</p>
+ */
+final class TemplateDependencies {
+  private static final String PEBBLE_EXTENSION = ".peb";
+  private static final String REFERENCE_TAGS = "(?:include|import|from|embed|extends)";
+  private static final Pattern ANY_REFERENCE = Pattern.compile("\\{%-?\\s*" + REFERENCE_TAGS + "\\s");
+  private static final Pattern STATIC_REFERENCE = Pattern.compile(
+    "\\{%-?\\s*" + REFERENCE_TAGS + "\\s+(?:\"([^\"]*)\"|'([^']*)')\\s*(?=-?%}|with\\b|import\\b|only\\b|ignore\\b)"
+  );
+
+  // all keys are normalized to use '/' as a separator
+  private final Set<String> known;
+  private final Map<String, Set<String>> dependencies;
+  private final Map<String, Set<String>> dependents;
+  private final Set<String> dynamic;
+
+  private TemplateDependencies(final Set<String> known, final Map<String, Set<String>> dependencies, final Map<String, Set<String>> dependents, final Set<String> dynamic) {
+    this.known = known;
+    this.dependencies = dependencies;
+    this.dependents = dependents;
+    this.dynamic = dynamic;
+  }
+
+  /**
+   * Scan every provided template for references to other templates.
+   *
+   * @param loader the loader to read template sources from
+   * @param templateNames the names of every known template, both processed templates and includes
+   * @return the dependency graph
+   */
+  static TemplateDependencies scan(final MultiDirectoryLoader loader, final Collection<String> templateNames) {
+    final Set<String> known = new HashSet<>();
+    for (final String name : templateNames) {
+      known.add(normalize(name));
+    }
+
+    final Map<String, Set<String>> dependencies = new HashMap<>();
+    final Map<String, Set<String>> dependents = new HashMap<>();
+    final Set<String> dynamic = new HashSet<>();
+    for (final String name : templateNames) {
+      final String source = readSource(loader, name);
+      final String referrer = normalize(name);
+      int staticReferences = 0;
+      final Matcher matcher = STATIC_REFERENCE.matcher(source);
+      while (matcher.find()) {
+        staticReferences++;
+        final String reference = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        final @Nullable String target = resolve(loader, known, reference, name);
+        if (target != null) {
+          dependencies.computeIfAbsent(referrer, $ -> new HashSet<>()).add(target);
+          dependents.computeIfAbsent(target, $ -> new HashSet<>()).add(referrer);
+        }
+      }
+
+      int allReferences = 0;
+      final Matcher anyMatcher = ANY_REFERENCE.matcher(source);
+      while (anyMatcher.find()) {
+        allReferences++;
+      }
+
+      if (allReferences > staticReferences) {
+        dynamic.add(referrer);
+      }
+    }
+
+    return new TemplateDependencies(known, dependencies, dependents, dynamic);
+  }
+
+  /**
+   * Compute every template that may be evaluated when rendering the provided template.
+   *
+   * <p>If any template in the closure refers to others dynamically, every known template is included.</p>
+   *
+   * @param template the template
+   * @return the template, plus all of its direct and transitive dependencies
+   */
+  Set<String> closureOf(final String template) {
+    final Set<String> closure = new HashSet<>();
+    final Deque<String> toVisit = new ArrayDeque<>();
+    toVisit.add(normalize(template));
+    while (!toVisit.isEmpty()) {
+      final String next = toVisit.pop();
+      if (this.dynamic.contains(next)) {
+        return Collections.unmodifiableSet(this.known);
+      }
+      if (closure.add(next)) {
+        toVisit.addAll(this.dependencies.getOrDefault(next, Set.of()));
+      }
+    }
+    return closure;
+  }
+
+  /**
+   * Compute every template that may produce different output when the provided templates change.
+   *
+   * @param changed the changed templates
+   * @return the changed templates, plus all of their direct and transitive dependents
+   */
+  Set<String> affectedBy(final Collection<String> changed) {
+    final Set<String> affected = new HashSet<>();
+    final Deque<String> toVisit = new ArrayDeque<>();
+    for (final String name : changed) {
+      toVisit.add(normalize(name));
+    }
+    if (!toVisit.isEmpty()) {
+      toVisit.addAll(this.dynamic);
+    }
+
+    while (!toVisit.isEmpty()) {
+      final String next = toVisit.pop();
+      if (affected.add(next)) {
+        toVisit.addAll(this.dependents.getOrDefault(next, Set.of()));
+      }
+    }
+    return affected;
+  }
+
+  static String normalize(final String templateName) {
+    return File.separatorChar == '/' ? templateName : templateName.replace(File.separatorChar, '/');
+  }
+
+  private static @Nullable String resolve(final MultiDirectoryLoader loader, final Set<String> known, final String reference, final String anchor) {
+    final @Nullable String relative = loader.resolveRelativePath(reference, anchor);
+    final String name = normalize(relative == null ? reference : relative);
+    if (!name.endsWith(PEBBLE_EXTENSION) && known.contains(name + PEBBLE_EXTENSION)) {
+      // when both spellings exist, depend on the one the loader picks, which may be in an earlier directory
+      final @Nullable Path file = loader.createCacheKey(name).file;
+      if (file != null && file.getFileName().toString().endsWith(PEBBLE_EXTENSION)) {
+        return name + PEBBLE_EXTENSION;
+      }
+    }
+    if (known.contains(name)) {
+      return name;
+    } else if (!name.endsWith(PEBBLE_EXTENSION) && known.contains(name + PEBBLE_EXTENSION)) {
+      return name + PEBBLE_EXTENSION;
+    }
+    return null;
+  }
+
+  private static String readSource(final MultiDirectoryLoader loader, final String templateName) {
+    try (final Reader reader = loader.getReader(templateName)) {
+      final StringWriter writer = new StringWriter();
+      reader.transferTo(writer);
+      return writer.toString();
+    } catch (final IOException ex) {
+      throw new GradleException("Failed to read template '" + templateName + "' while determining its dependencies", ex);
+    }
+  }
+}
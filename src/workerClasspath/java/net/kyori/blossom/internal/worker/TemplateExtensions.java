@@ -0,0 +1,120 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import io.pebbletemplates.pebble.extension.Extension;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The Pebble extensions registered on every engine.
+ *
+ * <p>This is Blossom's own {@link CodegenExtension}, plus any extensions on the worker classpath that are registered as
+ * a {@link ServiceLoader} service for {@link Extension}.</p>
+ */
+final class TemplateExtensions {
+  private static final Extension[] EXTENSIONS;
+  private static final String FINGERPRINT;
+
+  static {
+    final List<Extension> extensions = new ArrayList<>();
+    extensions.add(new CodegenExtension());
+    for (final Extension extension : ServiceLoader.load(Extension.class, TemplateExtensions.class.getClassLoader())) {
+      extensions.add(extension);
+    }
+    EXTENSIONS = extensions.toArray(new Extension[0]);
+
+    final StringBuilder fingerprint = new StringBuilder();
+    final Map<URL, String> codeSources = new HashMap<>();
+    for (final Extension extension : EXTENSIONS) {
+      final Class<?> type = extension.getClass();
+      final @Nullable CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+      final @Nullable URL location = codeSource == null ? null : codeSource.getLocation();
+      fingerprint.append(type.getName())
+        .append('@')
+        .append(location == null ? "\0" : codeSources.computeIfAbsent(location, TemplateExtensions::hashLocation))
+        .append(';');
+    }
+    FINGERPRINT = fingerprint.toString();
+  }
+
+  private TemplateExtensions() {
+  }
+
+  /**
+   * Get every extension to register.
+   *
+   * @return the extensions
+   */
+  static Extension[] all() {
+    return EXTENSIONS.clone();
+  }
+
+  /**
+   * Get a description of the registered extensions, for use when determining whether a cached output is still valid.
+   *
+   * <p>Extensions are identified by their class and a hash of the contents of the jar or class directory they were loaded
+   * from, so any change to an extension's code invalidates cached outputs.</p>
+   *
+   * @return the fingerprint
+   */
+  static String fingerprint() {
+    return FINGERPRINT;
+  }
+
+  private static String hashLocation(final URL location) {
+    final MessageDigest digest = ContentHash.digest();
+    try {
+      final Path path = Path.of(location.toURI());
+      if (Files.isDirectory(path)) {
+        final List<Path> files;
+        try (final Stream<Path> walk = Files.walk(path)) {
+          files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (final Path file : files) {
+          digest.update(path.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+          digest.update((byte) 0);
+          digest.update(Files.readAllBytes(file));
+        }
+      } else {
+        digest.update(Files.readAllBytes(path));
+      }
+    } catch (final URISyntaxException | IllegalArgumentException | IOException ex) {
+      // not something we can read, so changes can only be noticed through its location
+      return location.toString();
+    }
+    return ContentHash.toHex(digest.digest());
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.gradle.api.logging.Logging;
+
+/**
+ * Java Flight Recorder events for the phases of generation.
+ *
+ * <p>Events are only created while at least one generation run in this worker has asked for them, so with no template set
+ * opting in, each instrumented site costs a single volatile read. Even when enabled, events are only recorded if the
+ * active recording enables them.</p>
+ */
+final class WorkerEvents {
+  // the number of generation runs that have asked for events
+  private static final AtomicInteger ACTIVE = new AtomicInteger();
+  private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+  private WorkerEvents() {
+  }
+
+  static boolean enabled() {
+    return ACTIVE.get() > 0;
+  }
+
+  /**
+   * Start emitting events, until the returned scope is closed.
+   *
+   * @param requested whether events were requested
+   * @return a scope to close when the generation run is done
+   */
+  static Scope enable(final boolean requested) {
+    if (!requested) {
+      return () -> {};
+    }
+    if (!AVAILABLE) {
+      Logging.getLogger(WorkerEvents.class).warn("Flight Recorder events were requested for a Blossom template set, but the jdk.jfr module is not available in this JVM");
+      return () -> {};
+    }
+
+    ACTIVE.incrementAndGet();
+    return ACTIVE::decrementAndGet;
+  }
+
+  /**
+   * A period during which events are emitted.
+   */
+  interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  @Name("net.kyori.blossom.TemplateParse")
+  @Label("Template Parse")
+  @Description("A template was parsed by Pebble")
+  @Category({"Blossom"})
+  @StackTrace(false)
+  static final class TemplateParse extends Event {
+    @Label("Template")
+    String template;
+  }
+
+  @Name("net.kyori.blossom.TemplateRender")
+  @Label("Template Render")
+  @Description("A template was evaluated with the data of one variant")
+  @Category({"Blossom"})
+  @StackTrace(false)
+  static final class TemplateRender extends Event {
+    @Label("Template")
+    String template;
+
+    @Label("Variant")
+    String variant;
+
+    @Label("Output")
+    String output;
+
+    @Label("Streamed")
+    @Description("Whether the output was written while rendering, in which case writing is included in this event")
+    boolean streamed;
+  }
+
+  @Name("net.kyori.blossom.DataFileLoad")
+  @Label("Data File Load")
+  @Description("A data file was read and parsed")
+  @Category({"Blossom"})
+  @StackTrace(false)
+  static final class DataFileLoad extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+  }
+
+  @Name("net.kyori.blossom.OutputWrite")
+  @Label("Output Write")
+  @Description("A rendered output was written to disk")
+  @Category({"Blossom"})
+  @StackTrace(false)
+  static final class OutputWrite extends Event {
+    @Label("Output")
+    String output;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+  }
+
+  @Name("net.kyori.blossom.LoaderLookup")
+  @Label("Template Lookup")
+  @Description("A template was located and read from the template directories")
+  @Category({"Blossom"})
+  @StackTrace(false)
+  static final class LoaderLookup extends Event {
+    @Label("Template")
+    String template;
+
+    @Label("Found")
+    boolean found;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The measurements a generation run needs to be checked against a budget, passed from each worker shard back to the task.
+ */
+public final class BudgetMeasurements {
+  private static final String HEADER = "# blossom budget measurements v1";
+  private static final char SEPARATOR = '\t';
+  private static final String TEMPLATE = "template";
+  private static final String OUTPUT = "output";
+
+  // template -> nanoseconds spent on all of its outputs
+  private final Map<String, Long> templateNanos = new HashMap<>();
+  // output -> size in bytes
+  private final Map<String, Long> outputBytes = new HashMap<>();
+
+  /**
+   * Read measurements from disk.
+   *
+   * @param file the measurements file
+   * @return the measurements, or {@code null} if the file does not exist or could not be understood
+   */
+  public static /* @Nullable */ BudgetMeasurements read(final Path file) {
+    try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) {
+        return null;
+      }
+
+      final BudgetMeasurements measurements = new BudgetMeasurements();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) continue;
+        final int split = line.indexOf(SEPARATOR);
+        final int valueSplit = line.indexOf(SEPARATOR, split + 1);
+        if (split == -1 || valueSplit == -1) {
+          return null;
+        }
+        final String kind = line.substring(0, split);
+        final long value = Long.parseLong(line.substring(split + 1, valueSplit));
+        final String name = line.substring(valueSplit + 1);
+        if (TEMPLATE.equals(kind)) {
+          measurements.template(name, value);
+        } else if (OUTPUT.equals(kind)) {
+          measurements.output(name, value);
+        } else {
+          return null;
+        }
+      }
+      return measurements;
+    } catch (final IOException | NumberFormatException ex) { // missing or corrupt, either way we can't use it
+      return null;
+    }
+  }
+
+  /**
+   * Write these measurements to disk, replacing any existing file.
+   *
+   * @param file the destination file
+   * @throws IOException if unable to write
+   */
+  public void write(final Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+    try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      for (final Map.Entry<String, Long> entry : this.templateNanos.entrySet()) {
+        writeLine(writer, TEMPLATE, entry.getValue(), entry.getKey());
+      }
+      for (final Map.Entry<String, Long> entry : this.outputBytes.entrySet()) {
+        writeLine(writer, OUTPUT, entry.getValue(), entry.getKey());
+      }
+    }
+  }
+
+  private static void writeLine(final BufferedWriter writer, final String kind, final long value, final String name) throws IOException {
+    writer.write(kind);
+    writer.write(SEPARATOR);
+    writer.write(Long.toString(value));
+    writer.write(SEPARATOR);
+    writer.write(name);
+    writer.newLine();
+  }
+
+  /**
+   * Record time spent on a template, adding to any time already recorded.
+   *
+   * @param template the template name
+   * @param nanos the time spent, in nanoseconds
+   */
+  public void template(final String template, final long nanos) {
+    this.templateNanos.merge(template, nanos, Long::sum);
+  }
+
+  /**
+   * Record the size of an output.
+   *
+   * @param output the output path
+   * @param bytes the size of the output, in bytes
+   */
+  public void output(final String output, final long bytes) {
+    this.outputBytes.put(output, bytes);
+  }
+
+  /**
+   * Add every measurement from another set of measurements to this one.
+   *
+   * @param other the other measurements
+   */
+  public void merge(final BudgetMeasurements other) {
+    for (final Map.Entry<String, Long> entry : other.templateNanos.entrySet()) {
+      this.template(entry.getKey(), entry.getValue());
+    }
+    this.outputBytes.putAll(other.outputBytes);
+  }
+
+  public Map<String, Long> templateNanos() {
+    return Collections.unmodifiableMap(this.templateNanos);
+  }
+
+  public Map<String, Long> outputBytes() {
+    return Collections.unmodifiableMap(this.outputBytes);
+  }
+
+  public long totalNanos() {
+    long total = 0;
+    for (final long nanos : this.templateNanos.values()) {
+      total += nanos;
+    }
+    return total;
+  }
+}
@@ -28,9 +28,25 @@ public interface GenerateWorkerInvoker {
   void generate(
     final TemplateParams globalParams,
     final Set<TemplateParams> variantParams,
+    final VariantMatrixSpec variantMatrix,
     final Set<Path> includePaths,
     final Set<Path> sourcePaths,
     final Path outputDir,
-    final /* @Nullable */ String header
+    final /* @Nullable */ String header,
+    final boolean incremental, // false for a full regeneration
+    final Path previousManifest,
+    final Path manifestOutput,
+    final GenerationOptions options
+  ) throws IOException;
+
+  void plan(
+    final TemplateParams globalParams,
+    final Set<TemplateParams> variantParams,
+    final VariantMatrixSpec variantMatrix,
+    final Set<Path> includePaths,
+    final Set<Path> sourcePaths,
+    final /* @Nullable */ String header,
+    final /* @Nullable */ String runId,
+    final Path planOutput
   ) throws IOException;
 }
@@ -0,0 +1,167 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * Options controlling how the worker performs generation, which do not affect the generated output itself.
+ */
+public final class GenerationOptions {
+  private boolean writeIfChanged;
+  private int parallelism = 1;
+  private int shardIndex;
+  private int shardCount = 1;
+  private /* @Nullable */ Path renderCacheDirectory;
+  private /* @Nullable */ Path metricsReportDirectory;
+  private int slowestTemplatesToLog;
+  private boolean flightRecorderEvents;
+  private /* @Nullable */ Path budgetMeasurementsFile;
+  private /* @Nullable */ String runId;
+
+  public boolean writeIfChanged() {
+    return this.writeIfChanged;
+  }
+
+  public GenerationOptions writeIfChanged(final boolean writeIfChanged) {
+    this.writeIfChanged = writeIfChanged;
+    return this;
+  }
+
+  public int parallelism() {
+    return this.parallelism;
+  }
+
+  public GenerationOptions parallelism(final int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1, but was " + parallelism);
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  public int shardIndex() {
+    return this.shardIndex;
+  }
+
+  public int shardCount() {
+    return this.shardCount;
+  }
+
+  public GenerationOptions shard(final int shardIndex, final int shardCount) {
+    if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+      throw new IllegalArgumentException("Invalid shard " + shardIndex + " of " + shardCount);
+    }
+    this.shardIndex = shardIndex;
+    this.shardCount = shardCount;
+    return this;
+  }
+
+  public /* @Nullable */ Path renderCacheDirectory() {
+    return this.renderCacheDirectory;
+  }
+
+  public GenerationOptions renderCacheDirectory(final /* @Nullable */ Path renderCacheDirectory) {
+    this.renderCacheDirectory = renderCacheDirectory;
+    return this;
+  }
+
+  public /* @Nullable */ Path metricsReportDirectory() {
+    return this.metricsReportDirectory;
+  }
+
+  public int slowestTemplatesToLog() {
+    return this.slowestTemplatesToLog;
+  }
+
+  /**
+   * Record timings of each generation phase and each output.
+   *
+   * @param reportDirectory the directory to write a report to, or {@code null} to disable metrics
+   * @param slowestTemplatesToLog the number of slowest templates to summarize in the build log
+   * @return this options object
+   */
+  public GenerationOptions metrics(final /* @Nullable */ Path reportDirectory, final int slowestTemplatesToLog) {
+    this.metricsReportDirectory = reportDirectory;
+    this.slowestTemplatesToLog = slowestTemplatesToLog;
+    return this;
+  }
+
+  public boolean flightRecorderEvents() {
+    return this.flightRecorderEvents;
+  }
+
+  public GenerationOptions flightRecorderEvents(final boolean flightRecorderEvents) {
+    this.flightRecorderEvents = flightRecorderEvents;
+    return this;
+  }
+
+  public /* @Nullable */ Path budgetMeasurementsFile() {
+    return this.budgetMeasurementsFile;
+  }
+
+  /**
+   * Record the measurements needed to check a generation budget.
+   *
+   * @param budgetMeasurementsFile the file to write measurements to, or {@code null} if no budget is set
+   * @return this options object
+   */
+  public GenerationOptions budgetMeasurementsFile(final /* @Nullable */ Path budgetMeasurementsFile) {
+    this.budgetMeasurementsFile = budgetMeasurementsFile;
+    return this;
+  }
+
+  public /* @Nullable */ String runId() {
+    return this.runId;
+  }
+
+  /**
+   * Identify the task execution this generation is part of.
+   *
+   * <p>Every shard of one execution shares the same id, so that state cached in the worker is refreshed once per execution
+   * rather than once per shard.</p>
+   *
+   * @param runId the execution id, or {@code null} to refresh cached state on every generation
+   * @return this options object
+   */
+  public GenerationOptions runId(final /* @Nullable */ String runId) {
+    this.runId = runId;
+    return this;
+  }
+
+  /**
+   * Get whether the template with the provided name should be processed by this shard.
+   *
+   * <p>Templates are assigned to shards based on a hash of their name, so every shard
+   * will agree on which templates it is responsible for without any coordination.</p>
+   *
+   * @param templateName the template name, relative to its source directory
+   * @return whether this shard owns the template
+   */
+  public boolean ownsTemplate(final String templateName) {
+    if (this.shardCount == 1) {
+      return true;
+    }
+    final String normalized = File.separatorChar == '/' ? templateName : templateName.replace(File.separatorChar, '/');
+    return Math.floorMod(normalized.hashCode(), this.shardCount) == this.shardIndex;
+  }
+}
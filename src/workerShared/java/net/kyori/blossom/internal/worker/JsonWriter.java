@@ -0,0 +1,160 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A minimal streaming JSON writer, for the machine-readable reports Blossom produces.
+ *
+ * <p>Output is indented with two spaces, one value per line.</p>
+ */
+public final class JsonWriter implements Closeable {
+  private final Writer out;
+  // for each open container, whether it has had any values written yet
+  private final Deque<Boolean> hasValues = new ArrayDeque<>();
+  private boolean afterName;
+
+  public JsonWriter(final Writer out) {
+    this.out = out;
+  }
+
+  public JsonWriter beginObject() throws IOException {
+    this.beforeValue();
+    this.out.write('{');
+    this.hasValues.push(false);
+    return this;
+  }
+
+  public JsonWriter endObject() throws IOException {
+    return this.end('}');
+  }
+
+  public JsonWriter beginArray() throws IOException {
+    this.beforeValue();
+    this.out.write('[');
+    this.hasValues.push(false);
+    return this;
+  }
+
+  public JsonWriter endArray() throws IOException {
+    return this.end(']');
+  }
+
+  public JsonWriter name(final String name) throws IOException {
+    this.beforeValue();
+    this.string(name);
+    this.out.write(": ");
+    this.afterName = true;
+    return this;
+  }
+
+  public JsonWriter value(final /* @Nullable */ String value) throws IOException {
+    this.beforeValue();
+    if (value == null) {
+      this.out.write("null");
+    } else {
+      this.string(value);
+    }
+    return this;
+  }
+
+  public JsonWriter value(final long value) throws IOException {
+    this.beforeValue();
+    this.out.write(Long.toString(value));
+    return this;
+  }
+
+  public JsonWriter value(final double value) throws IOException {
+    this.beforeValue();
+    this.out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+    return this;
+  }
+
+  public JsonWriter value(final boolean value) throws IOException {
+    this.beforeValue();
+    this.out.write(value ? "true" : "false");
+    return this;
+  }
+
+  private JsonWriter end(final char close) throws IOException {
+    final boolean any = this.hasValues.pop();
+    if (any) {
+      this.newLine();
+    }
+    this.out.write(close);
+    if (this.hasValues.isEmpty()) {
+      this.out.write('\n');
+    }
+    return this;
+  }
+
+  private void beforeValue() throws IOException {
+    if (this.afterName) {
+      this.afterName = false;
+      return;
+    }
+    if (!this.hasValues.isEmpty()) {
+      if (this.hasValues.pop()) {
+        this.out.write(',');
+      }
+      this.hasValues.push(true);
+      this.newLine();
+    }
+  }
+
+  private void newLine() throws IOException {
+    this.out.write('\n');
+    for (int i = 0; i < this.hasValues.size(); i++) {
+      this.out.write("  ");
+    }
+  }
+
+  private void string(final String value) throws IOException {
+    this.out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '"': this.out.write("\\\""); break;
+        case '\\': this.out.write("\\\\"); break;
+        case '\n': this.out.write("\\n"); break;
+        case '\r': this.out.write("\\r"); break;
+        case '\t': this.out.write("\\t"); break;
+        default:
+          if (c < 0x20) {
+            this.out.write(String.format("\\u%04x", (int) c));
+          } else {
+            this.out.write(c);
+          }
+      }
+    }
+    this.out.write('"');
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.out.close();
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * A record of which output files were produced by which template in the last generation run, and the hash of their contents.
+ *
+ * <p>This is used to determine which outputs need to be removed when templates are changed or deleted,
+ * without having to clear out the whole output directory.</p>
+ *
+ * <p>The manifest also records the content hash of every template and include, plus a fingerprint of every other input,
+ * so the next run can work out for itself which templates changed. Each output is stamped with its size and modification
+ * time, so checking that outputs are untouched only needs to read files whose stamp changed.</p>
+ */
+public final class OutputManifest {
+  private static final String HEADER = "# blossom output manifest v4";
+  private static final char SEPARATOR = '\t';
+  private static final String UNKNOWN_HASH = "";
+  private static final String OUTPUT = "output";
+  private static final String SOURCE = "source";
+  private static final String INPUTS = "inputs";
+
+  // template -> output -> content hash
+  private final Map<String, Map<String, String>> outputsByTemplate = new TreeMap<>();
+  // output -> size and modification time when last generated
+  private final Map<String, String> stamps = new HashMap<>();
+  // template or include -> content hash
+  private final Map<String, String> sources = new TreeMap<>();
+  private /* @Nullable */ String inputs;
+
+  /**
+   * Read a manifest from disk.
+   *
+   * @param file the manifest file
+   * @return the manifest, or {@code null} if the file does not exist or could not be understood
+   */
+  public static /* @Nullable */ OutputManifest read(final Path file) {
+    try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) {
+        return null;
+      }
+
+      final OutputManifest manifest = new OutputManifest();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) continue;
+        final String[] parts = line.split(String.valueOf(SEPARATOR), -1);
+        if (parts[0].equals(OUTPUT) && parts.length == 5) {
+          manifest.put(parts[1], parts[2], parts[3]);
+          if (!parts[4].isEmpty()) {
+            manifest.stamp(parts[2], parts[4]);
+          }
+        } else if (parts[0].equals(SOURCE) && parts.length == 3) {
+          manifest.source(parts[1], parts[2]);
+        } else if (parts[0].equals(INPUTS) && parts.length == 2) {
+          manifest.inputs(parts[1]);
+        } else {
+          return null;
+        }
+      }
+      return manifest;
+    } catch (final IOException ex) { // missing or unreadable, either way we can't use it
+      return null;
+    }
+  }
+
+  /**
+   * Write this manifest to disk, replacing any existing file.
+   *
+   * @param file the destination file
+   * @throws IOException if unable to write
+   */
+  public void write(final Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+    try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      if (this.inputs != null) {
+        writer.write(INPUTS);
+        writer.write(SEPARATOR);
+        writer.write(this.inputs);
+        writer.newLine();
+      }
+      for (final Map.Entry<String, String> source : this.sources.entrySet()) {
+        writer.write(SOURCE);
+        writer.write(SEPARATOR);
+        writer.write(source.getKey());
+        writer.write(SEPARATOR);
+        writer.write(source.getValue());
+        writer.newLine();
+      }
+      for (final Map.Entry<String, Map<String, String>> entry : this.outputsByTemplate.entrySet()) {
+        for (final Map.Entry<String, String> output : entry.getValue().entrySet()) {
+          writer.write(OUTPUT);
+          writer.write(SEPARATOR);
+          writer.write(entry.getKey());
+          writer.write(SEPARATOR);
+          writer.write(output.getKey());
+          writer.write(SEPARATOR);
+          writer.write(output.getValue());
+          writer.write(SEPARATOR);
+          writer.write(this.stamps.getOrDefault(output.getKey(), ""));
+          writer.newLine();
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the fingerprint of every input other than template sources, as recorded when generating.
+   *
+   * @return the fingerprint, or {@code null} if none was recorded
+   */
+  public /* @Nullable */ String inputs() {
+    return this.inputs;
+  }
+
+  public void inputs(final /* @Nullable */ String inputs) {
+    this.inputs = inputs;
+  }
+
+  /**
+   * Get the content hash of every template and include, as recorded when generating.
+   *
+   * @return a map of template name to content hash
+   */
+  public Map<String, String> sources() {
+    return Collections.unmodifiableMap(this.sources);
+  }
+
+  public void source(final String name, final String hash) {
+    this.sources.put(name, hash);
+  }
+
+  public Set<String> templates() {
+    return Collections.unmodifiableSet(this.outputsByTemplate.keySet());
+  }
+
+  public Set<String> outputs(final String template) {
+    return Collections.unmodifiableSet(this.outputsByTemplate.getOrDefault(template, Map.of()).keySet());
+  }
+
+  /**
+   * Get the content hash recorded for an output.
+   *
+   * @param template the template producing the output
+   * @param output the output path
+   * @return the hash, or an empty string if unknown
+   */
+  public String hash(final String template, final String output) {
+    return this.outputsByTemplate.getOrDefault(template, Map.of()).getOrDefault(output, UNKNOWN_HASH);
+  }
+
+  /**
+   * Get the stamp recorded for an output, from {@link #currentStamp(Path)} when it was generated.
+   *
+   * @param output the output path
+   * @return the stamp, or {@code null} if unknown
+   */
+  public /* @Nullable */ String stamp(final String output) {
+    return this.stamps.get(output);
+  }
+
+  public void stamp(final String output, final String stamp) {
+    this.stamps.put(output, stamp);
+  }
+
+  /**
+   * Get a cheap identifier for the current state of a file, which changes whenever the file is written to.
+   *
+   * @param file the file
+   * @return the stamp, or {@code null} if the file is not a regular file
+   * @throws IOException if unable to read the file's attributes
+   */
+  public static /* @Nullable */ String currentStamp(final Path file) throws IOException {
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (final NoSuchFileException ex) {
+      return null;
+    }
+    if (!attributes.isRegularFile()) {
+      return null;
+    }
+    return attributes.size() + ":" + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+  }
+
+  public Set<String> allOutputs() {
+    final Set<String> ret = new LinkedHashSet<>();
+    for (final Map<String, String> outputs : this.outputsByTemplate.values()) {
+      ret.addAll(outputs.keySet());
+    }
+    return ret;
+  }
+
+  /**
+   * Get the content hash of every output.
+   *
+   * @return a map of output path to content hash
+   */
+  public Map<String, String> allHashes() {
+    final Map<String, String> ret = new HashMap<>();
+    for (final Map<String, String> outputs : this.outputsByTemplate.values()) {
+      ret.putAll(outputs);
+    }
+    return ret;
+  }
+
+  /**
+   * Create a copy of this manifest containing only the templates matching the provided filter.
+   *
+   * @param filter the template filter
+   * @return a filtered copy
+   */
+  public OutputManifest filter(final Predicate<String> filter) {
+    final OutputManifest ret = new OutputManifest();
+    for (final Map.Entry<String, Map<String, String>> entry : this.outputsByTemplate.entrySet()) {
+      if (filter.test(entry.getKey())) {
+        ret.outputsByTemplate.put(entry.getKey(), new LinkedHashMap<>(entry.getValue()));
+        for (final String output : entry.getValue().keySet()) {
+          final /* @Nullable */ String stamp = this.stamps.get(output);
+          if (stamp != null) {
+            ret.stamps.put(output, stamp);
+          }
+        }
+      }
+    }
+    return ret;
+  }
+
+  public void put(final String template, final String output) {
+    this.put(template, output, UNKNOWN_HASH);
+  }
+
+  public void put(final String template, final String output, final String hash) {
+    this.outputsByTemplate.computeIfAbsent(template, $ -> new LinkedHashMap<>()).put(output, hash);
+  }
+
+  public Set<String> remove(final String template) {
+    final Map<String, String> removed = this.outputsByTemplate.remove(template);
+    if (removed == null) {
+      return Set.of();
+    }
+    this.stamps.keySet().removeAll(removed.keySet());
+    return removed.keySet();
+  }
+
+  /**
+   * Delete a single output file, and any parent directories left empty by its removal.
+   *
+   * @param outputDirectory the root output directory
+   * @param output the output path, relative to the output directory
+   * @throws IOException if unable to delete the file
+   */
+  public static void deleteOutput(final Path outputDirectory, final String output) throws IOException {
+    Path file = outputDirectory.resolve(output);
+    Files.deleteIfExists(file);
+    // then clean up any directories left empty
+    file = file.getParent();
+    while (file != null && !file.equals(outputDirectory) && file.startsWith(outputDirectory)) {
+      try (final Stream<Path> children = Files.list(file)) {
+        if (children.findAny().isPresent()) {
+          break;
+        }
+      }
+      Files.delete(file);
+      file = file.getParent();
+    }
+  }
+
+  /**
+   * Delete every file in the output directory that is not an output listed in this manifest.
+   *
+   * @param outputDirectory the root output directory
+   * @throws IOException if unable to walk the directory or delete files
+   */
+  public void deleteUnknownOutputs(final Path outputDirectory) throws IOException {
+    if (!Files.isDirectory(outputDirectory)) return;
+
+    final Set<Path> known = new HashSet<>();
+    for (final String output : this.allOutputs()) {
+      known.add(outputDirectory.resolve(output).normalize());
+    }
+    Files.walkFileTree(outputDirectory, new SimpleFileVisitor<>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+        if (!known.contains(file.normalize())) {
+          Files.delete(file);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+        if (!dir.equals(outputDirectory)) {
+          try (final Stream<Path> children = Files.list(dir)) {
+            if (children.findAny().isEmpty()) {
+              Files.delete(dir);
+            }
+          }
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
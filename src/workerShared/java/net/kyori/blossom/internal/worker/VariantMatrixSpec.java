@@ -0,0 +1,144 @@
+/*
+ * This file is part of blossom, licensed under the GNU Lesser General Public License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.kyori.blossom.internal.worker;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A matrix of variants, defined as the cartesian product of several axes, minus any excluded combinations.
+ *
+ * <p>Combinations are computed on demand while iterating, so a matrix is never materialized in full.</p>
+ */
+public final class VariantMatrixSpec implements Iterable<Map<String, String>> {
+  private static final String NAME_SEPARATOR = "-";
+
+  private final List<String> axisNames;
+  private final List<List<String>> axisValues;
+  private final List<Map<String, String>> exclusions;
+
+  public VariantMatrixSpec(final Map<String, List<String>> axes, final List<Map<String, String>> exclusions) {
+    this.axisNames = List.copyOf(axes.keySet());
+    this.axisValues = new ArrayList<>(axes.size());
+    for (final String axis : this.axisNames) {
+      this.axisValues.add(List.copyOf(axes.get(axis)));
+    }
+    for (final Map<String, String> exclusion : exclusions) {
+      for (final String axis : exclusion.keySet()) {
+        if (!axes.containsKey(axis)) {
+          throw new IllegalArgumentException("Variant matrix exclusion " + exclusion + " refers to unknown axis '" + axis + "', known axes are " + this.axisNames);
+        }
+      }
+    }
+    this.exclusions = List.copyOf(exclusions);
+  }
+
+  public Map<String, List<String>> axes() {
+    final Map<String, List<String>> ret = new LinkedHashMap<>();
+    for (int i = 0; i < this.axisNames.size(); i++) {
+      ret.put(this.axisNames.get(i), this.axisValues.get(i));
+    }
+    return ret;
+  }
+
+  public List<Map<String, String>> exclusions() {
+    return this.exclusions;
+  }
+
+  public boolean isEmpty() {
+    return this.axisNames.isEmpty();
+  }
+
+  /**
+   * Get the variant name for a combination, made up of the value for each axis.
+   *
+   * @param combination the combination
+   * @return the variant name
+   */
+  public String nameOf(final Map<String, String> combination) {
+    return String.join(NAME_SEPARATOR, combination.values());
+  }
+
+  private boolean excluded(final Map<String, String> combination) {
+    for (final Map<String, String> exclusion : this.exclusions) {
+      if (combination.entrySet().containsAll(exclusion.entrySet())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Iterate over every combination of axis values that is not excluded.
+   *
+   * <p>Each combination maps axis names to values, in axis declaration order.</p>
+   *
+   * @return an iterator of combinations
+   */
+  @Override
+  public Iterator<Map<String, String>> iterator() {
+    return new Iterator<>() {
+      // the value index for each axis, advanced like an odometer
+      private final int[] indices = new int[VariantMatrixSpec.this.axisNames.size()];
+      private boolean exhausted = VariantMatrixSpec.this.isEmpty() || VariantMatrixSpec.this.axisValues.stream().anyMatch(List::isEmpty);
+      private /* @Nullable */ Map<String, String> next;
+
+      @Override
+      public boolean hasNext() {
+        while (this.next == null && !this.exhausted) {
+          final Map<String, String> candidate = new LinkedHashMap<>();
+          for (int i = 0; i < this.indices.length; i++) {
+            candidate.put(VariantMatrixSpec.this.axisNames.get(i), VariantMatrixSpec.this.axisValues.get(i).get(this.indices[i]));
+          }
+          this.advance();
+          if (!VariantMatrixSpec.this.excluded(candidate)) {
+            this.next = candidate;
+          }
+        }
+        return this.next != null;
+      }
+
+      private void advance() {
+        for (int i = this.indices.length - 1; i >= 0; i--) {
+          if (++this.indices[i] < VariantMatrixSpec.this.axisValues.get(i).size()) {
+            return;
+          }
+          this.indices[i] = 0;
+        }
+        this.exhausted = true;
+      }
+
+      @Override
+      public Map<String, String> next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final Map<String, String> ret = this.next;
+        this.next = null;
+        return ret;
+      }
+    };
+  }
+}